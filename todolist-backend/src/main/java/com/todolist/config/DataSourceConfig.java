@@ -0,0 +1,40 @@
+package com.todolist.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connection settings that depend on the database behind spring.datasource.url.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    // MySQL Connector/J reads a whole result into memory unless cursor fetch is on; with it, a query
+    // with a fetch size, like the export's, reads that many rows at a time from a server-side cursor
+    public static final String MYSQL_CURSOR_FETCH = "useCursorFetch";
+
+    // Set before the pool starts, which seals its configuration
+    @Bean
+    public static BeanPostProcessor mysqlCursorFetchPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    enableCursorFetch(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Only for MySQL, and not over a URL or property that sets it already
+    static void enableCursorFetch(HikariDataSource dataSource) {
+        String url = dataSource.getJdbcUrl();
+        if (url != null && url.startsWith("jdbc:mysql:") && !url.contains(MYSQL_CURSOR_FETCH)
+                && !dataSource.getDataSourceProperties().containsKey(MYSQL_CURSOR_FETCH)) {
+            dataSource.addDataSourceProperty(MYSQL_CURSOR_FETCH, "true");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.todolist.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+
+/**
+ * Meters beyond the ones Spring Boot registers on its own; buckets and exposure are set in
+ * application.properties under management.*.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // http.server.requests tagged with the controller method, e.g. handler=TodoController.getTodos
+    @Bean
+    public ServerRequestObservationConvention serverRequestObservationConvention() {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                return super.getLowCardinalityKeyValues(context).and(handler(context));
+            }
+        };
+    }
+
+    private static KeyValue handler(ServerRequestObservationContext context) {
+        return KeyValue.of("handler", handler(context.getCarrier()));
+    }
+
+    // The controller method that served the request, or "none"
+    static String handler(HttpServletRequest request) {
+        if (request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod method) {
+            return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        }
+        return "none";
+    }
+
+    // Every DataSource counts its statements for SqlStatementCountFilter, in tests and benchmarks only
+    @Bean
+    @ConditionalOnProperty(name = SqlStatementCountFilter.ENABLED, havingValue = "true")
+    public static BeanPostProcessor sqlStatementCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? SqlStatementCounter.counting(dataSource) : bean;
+            }
+        };
+    }
+}
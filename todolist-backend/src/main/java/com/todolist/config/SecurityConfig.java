@@ -1,8 +1,13 @@
 package com.todolist.config;
 
+import com.todolist.security.BoundedPasswordEncoder;
 import com.todolist.security.CustomUserDetailsService;
 import com.todolist.security.JwtAuthenticationFilter;
+import com.todolist.security.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,12 +17,13 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
@@ -29,12 +35,38 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @Autowired
     private CorsConfigurationSource corsConfigurationSource;
 
-    @Bean
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${app.password.hashing-threads:0}")
+    private int hashingThreads;
+
+    @Value("${app.password.hashing-queue:1000}")
+    private int hashingQueue;
+
+    @Value("${app.password.hashing-wait:10000}")
+    private long hashingWaitMillis;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    // Set when the management endpoints are served on their own port, kept off the public network
+    @Value("${management.server.port:}")
+    private Integer managementPort;
+
+    @Bean(destroyMethod = "shutdown")
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(bcryptStrength, hashingThreads, hashingQueue,
+                Duration.ofMillis(hashingWaitMillis), meterRegistry);
     }
 
     @Bean
@@ -42,6 +74,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Stores a new hash on login when the stored one was made with another cost
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -56,16 +90,23 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authz -> authz
+                        // Streamed responses finish on an async dispatch of a request that was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/email/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
-                        .requestMatchers("/actuator/**").permitAll()
+                        .requestMatchers(request -> managementPort != null && managementPort > 0 && managementPort != serverPort
+                                && request.getLocalPort() == managementPort).permitAll()
+                        // Metrics and the rest of /actuator need a signed-in user on the API port
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .headers(headers -> headers.frameOptions().disable());
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        // After the JWT filter, so API requests are limited per user rather than per IP
+        http.addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,120 @@
+package com.todolist.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements of each request with {@link SqlStatementCounter} and records them in the
+ * sql.statements summary per controller method. With app.sql-statements.header-enabled the count also
+ * goes out as the X-SQL-Statements header, as it stands when the response body starts; statements of
+ * a streamed body run on other threads and are not counted. Only with app.sql-statements.enabled,
+ * which the test profile and the benchmarks set, as counting puts a proxy in front of every connection
+ * and statement.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = SqlStatementCountFilter.ENABLED, havingValue = "true")
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    public static final String ENABLED = "app.sql-statements.enabled";
+    public static final String HEADER = "X-SQL-Statements";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.sql-statements.header-enabled:false}")
+    private boolean headerEnabled;
+
+    public SqlStatementCountFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        SqlStatementCounter.start();
+        try {
+            if (headerEnabled) {
+                CountingResponse countingResponse = new CountingResponse(response);
+                chain.doFilter(request, countingResponse);
+                countingResponse.addCount();
+            } else {
+                chain.doFilter(request, response);
+            }
+        } finally {
+            int statements = SqlStatementCounter.stop();
+            DistributionSummary.builder("sql.statements")
+                    .tag("handler", MetricsConfig.handler(request))
+                    .description("SQL statements sent per HTTP request")
+                    .register(meterRegistry)
+                    .record(statements);
+        }
+    }
+
+    // Sets the header before anything commits the response
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private boolean counted;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void addCount() {
+            if (!counted && !isCommitted()) {
+                counted = true;
+                setHeader(HEADER, String.valueOf(SqlStatementCounter.current()));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addCount();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addCount();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addCount();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addCount();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addCount();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addCount();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.todolist.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Counts the SQL statements sent to the database on the current thread between {@link #start()} and
+ * {@link #stop()}, at the DataSource, so the queries of Hibernate and JdbcTemplate are all seen; the
+ * id blocks of IdBlockAllocator are reserved on connections of its own and are not. A batch counts
+ * once. Threads without a started count are not counted.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    public static int current() {
+        int[] count = COUNT.get();
+        return count != null ? count[0] : 0;
+    }
+
+    public static int stop() {
+        int count = current();
+        COUNT.remove();
+        return count;
+    }
+
+    static DataSource counting(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return proxy(Connection.class, super.getConnection(), SqlStatementCounter::statementsOf);
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return proxy(Connection.class, super.getConnection(username, password), SqlStatementCounter::statementsOf);
+            }
+        };
+    }
+
+    // Statements created by the connection are counted when executed
+    private static Object statementsOf(Object connection, Method method, Object[] args) throws Throwable {
+        Object result = invoke(connection, method, args);
+        if (result instanceof CallableStatement statement) {
+            return proxy(CallableStatement.class, statement, SqlStatementCounter::executions);
+        }
+        if (result instanceof PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, SqlStatementCounter::executions);
+        }
+        if (result instanceof Statement statement) {
+            return proxy(Statement.class, statement, SqlStatementCounter::executions);
+        }
+        return result;
+    }
+
+    private static Object executions(Object statement, Method method, Object[] args) throws Throwable {
+        if (method.getName().startsWith("execute")) {
+            int[] count = COUNT.get();
+            if (count != null) {
+                count[0]++;
+            }
+        }
+        return invoke(statement, method, args);
+    }
+
+    private interface Call {
+        Object call(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Call call) {
+        InvocationHandler handler = (proxy, method, args) -> call.call(target, method, args);
+        return (T) Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.todolist.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.todolist.dto.CategoryDto;
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoDto;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Response formats besides plain JSON: listings narrowed with ?fields= and CBOR for clients sending
+ * Accept: application/cbor. Compression is Tomcat's, see server.compression.* in application.properties.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    private static final String FIELDS_FILTER = "fields";
+
+    // Without a filter for the id, as in every response that was not narrowed, all properties are written
+    @JsonFilter(FIELDS_FILTER)
+    private abstract static class FieldsFilter {
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return builder -> builder
+                .mixIn(TodoDto.class, FieldsFilter.class)
+                .mixIn(CategoryDto.class, FieldsFilter.class)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    // Built from the same builder as the JSON mapper, so dates, time zone and the fields filter match
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    // Spring's message converters flush, so Tomcat would never know the length of a listing and compress
+    // every one however small. Buffering them gives them a Content-Length. ShallowEtagHeaderFilter would
+    // not buffer responses that already have an ETag, and the event stream and export must not be.
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> listingBufferFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain chain) throws ServletException, IOException {
+                ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+                chain.doFilter(request, buffered);
+                buffered.copyBodyToResponse();
+            }
+        });
+        registration.addUrlPatterns("/api/todos", "/api/todos/category/*", "/api/categories");
+        return registration;
+    }
+
+    /**
+     * The body with the todos or categories in it limited to the requested fields, for either format.
+     */
+    public static Object withFields(Object body, FieldSet fields) {
+        if (fields.isAll()) {
+            return body;
+        }
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(new SimpleFilterProvider()
+                .addFilter(FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields.names())));
+        return value;
+    }
+}
@@ -3,8 +3,10 @@ package com.todolist.controller;
 import com.todolist.dto.*;
 import com.todolist.entity.User;
 import com.todolist.repository.UserRepository;
+import com.todolist.security.AuthenticatedUserCache;
 import com.todolist.security.JwtTokenUtil;
-import com.todolist.service.EmailService;
+import com.todolist.security.UserPrincipal;
+import com.todolist.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -12,7 +14,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -36,7 +37,10 @@ public class AuthController {
     JwtTokenUtil jwtTokenUtil;
 
     @Autowired
-    EmailService emailService;
+    UserService userService;
+
+    @Autowired
+    AuthenticatedUserCache authenticatedUserCache;
 
     @PostMapping("/auth/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
@@ -46,17 +50,15 @@ public class AuthController {
                                                       loginRequest.getPassword()));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        // Loaded by the authentication itself, so the users row is not read a second time
+        UserPrincipal user = (UserPrincipal) authentication.getPrincipal();
 
         if (!user.isEmailValidated()) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse("Email not validated. Please check your email and click the validation link."));
         }
 
-        String jwt = jwtTokenUtil.generateToken(userDetails);
+        String jwt = jwtTokenUtil.generateToken(user);
 
         return ResponseEntity.ok(new JwtResponse(jwt,
                                                user.getId(),
@@ -86,10 +88,8 @@ public class AuthController {
         user.setEmailValidationTokenExpiry(LocalDateTime.now().plusHours(24));
         user.setEmailValidated(false);
 
-        userRepository.save(user);
-
-        boolean emailSent = emailService.sendEmailValidation(user.getEmail(), validationToken);
-        if (!emailSent) {
+        boolean emailQueued = userService.registerUser(user);
+        if (!emailQueued) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse("User registered but failed to send validation email. Please contact support."));
         }
@@ -114,6 +114,7 @@ public class AuthController {
 
         if (user.getEmailValidationTokenExpiry().isBefore(LocalDateTime.now())) {
             userRepository.delete(user);
+            authenticatedUserCache.evict(user.getUsername());
             return ResponseEntity.badRequest()
                     .body(new MessageResponse("Validation token has expired. User account has been removed. Please register again."));
         }
@@ -126,6 +127,7 @@ public class AuthController {
         user.setEmailValidationToken(null);
         user.setEmailValidationTokenExpiry(null);
         userRepository.save(user);
+        authenticatedUserCache.evict(user.getUsername());
 
         return ResponseEntity.ok(new MessageResponse("Email validated successfully! You can now log in."));
     }
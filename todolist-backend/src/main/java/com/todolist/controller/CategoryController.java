@@ -1,11 +1,17 @@
 package com.todolist.controller;
 
+import com.todolist.config.WireFormatConfig;
 import com.todolist.dto.CategoryDto;
+import com.todolist.dto.FieldSet;
 import com.todolist.service.CategoryService;
+import com.todolist.service.DataVersionService;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -14,15 +20,24 @@ import java.util.List;
 public class CategoryController {
     
     private final CategoryService categoryService;
+    private final DataVersionService dataVersionService;
     
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, DataVersionService dataVersionService) {
         this.categoryService = categoryService;
+        this.dataVersionService = dataVersionService;
     }
     
+    // fields=id,name,... limits the properties of each category to those named
     @GetMapping
-    public ResponseEntity<List<CategoryDto>> getAllCategories() {
-        List<CategoryDto> categories = categoryService.getAllCategories();
-        return ResponseEntity.ok(categories);
+    public ResponseEntity<?> getAllCategories(@RequestParam(required = false) String fields, WebRequest request) {
+        FieldSet fieldSet = FieldSet.parse(fields, CategoryDto.FIELDS);
+        String eTag = dataVersionService.currentETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        List<CategoryDto> categories = categoryService.getAllCategories(fieldSet);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(eTag).varyBy(HttpHeaders.ACCEPT)
+                .body(WireFormatConfig.withFields(categories, fieldSet));
     }
     
     @GetMapping("/{id}")
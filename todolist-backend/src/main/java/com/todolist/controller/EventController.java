@@ -0,0 +1,25 @@
+package com.todolist.controller;
+
+import com.todolist.service.UserEventService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+public class EventController {
+    
+    private final UserEventService userEventService;
+    
+    public EventController(UserEventService userEventService) {
+        this.userEventService = userEventService;
+    }
+    
+    // A "change" event follows every committed change to the user's todos or categories
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+        return userEventService.subscribe();
+    }
+}
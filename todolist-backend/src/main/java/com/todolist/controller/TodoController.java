@@ -1,11 +1,26 @@
 package com.todolist.controller;
 
+import com.todolist.config.WireFormatConfig;
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoBatchOperationDto;
+import com.todolist.dto.TodoChangesDto;
 import com.todolist.dto.TodoDto;
+import com.todolist.dto.TodoPageDto;
+import com.todolist.service.DataVersionService;
+import com.todolist.service.TodoBatchService;
+import com.todolist.service.TodoExportService;
+import com.todolist.service.TodoSearchService;
 import com.todolist.service.TodoService;
+import com.todolist.service.TodoSyncService;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -14,20 +29,88 @@ import java.util.List;
 public class TodoController {
     
     private final TodoService todoService;
+    private final TodoExportService todoExportService;
+    private final TodoBatchService todoBatchService;
+    private final DataVersionService dataVersionService;
+    private final TodoSyncService todoSyncService;
+    private final TodoSearchService todoSearchService;
     
-    public TodoController(TodoService todoService) {
+    public TodoController(TodoService todoService, TodoExportService todoExportService, TodoBatchService todoBatchService,
+                          DataVersionService dataVersionService, TodoSyncService todoSyncService,
+                          TodoSearchService todoSearchService) {
         this.todoService = todoService;
+        this.todoExportService = todoExportService;
+        this.todoBatchService = todoBatchService;
+        this.dataVersionService = dataVersionService;
+        this.todoSyncService = todoSyncService;
+        this.todoSearchService = todoSearchService;
     }
     
+    // Without size and cursor the whole list is returned, as before paging was added;
+    // fields=id,title,... limits the properties of each todo to those named
     @GetMapping
-    public ResponseEntity<List<TodoDto>> getAllTodos() {
-        List<TodoDto> todos = todoService.getAllTodos();
-        return ResponseEntity.ok(todos);
+    public ResponseEntity<?> getAllTodos(@RequestParam(required = false) Integer size,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        FieldSet fieldSet = FieldSet.parse(fields, TodoDto.FIELDS);
+        String eTag = dataVersionService.currentETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        if (size == null && cursor == null) {
+            List<TodoDto> todos = todoService.getAllTodos(fieldSet);
+            return listing(eTag).body(WireFormatConfig.withFields(todos, fieldSet));
+        }
+        TodoPageDto page = todoService.getTodoPage(size, cursor, fieldSet);
+        return listing(eTag).body(WireFormatConfig.withFields(page, fieldSet));
     }
     
     @GetMapping("/category/{categoryName}")
-    public ResponseEntity<List<TodoDto>> getTodosByCategory(@PathVariable String categoryName) {
-        List<TodoDto> todos = todoService.getTodosByCategory(categoryName);
+    public ResponseEntity<?> getTodosByCategory(@PathVariable String categoryName,
+                                                @RequestParam(required = false) Integer size,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) String fields,
+                                                WebRequest request) {
+        FieldSet fieldSet = FieldSet.parse(fields, TodoDto.FIELDS);
+        String eTag = dataVersionService.currentETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        if (size == null && cursor == null) {
+            List<TodoDto> todos = todoService.getTodosByCategory(categoryName, fieldSet);
+            return listing(eTag).body(WireFormatConfig.withFields(todos, fieldSet));
+        }
+        TodoPageDto page = todoService.getTodoPageByCategory(categoryName, size, cursor, fieldSet);
+        return listing(eTag).body(WireFormatConfig.withFields(page, fieldSet));
+    }
+    
+    // The same ETag for JSON and CBOR, so caches have to tell them apart by Accept
+    private static ResponseEntity.BodyBuilder listing(String eTag) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(eTag).varyBy(HttpHeaders.ACCEPT);
+    }
+    
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTodos() {
+        StreamingResponseBody body = todoExportService.exportCurrentUser();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"todos.ndjson\"")
+                .body(body);
+    }
+    
+    // Without since the complete lists are returned, flagged as full
+    @GetMapping("/changes")
+    public ResponseEntity<TodoChangesDto> getChanges(@RequestParam(required = false) String since) {
+        TodoChangesDto changes = todoSyncService.getChanges(since);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(changes);
+    }
+    
+    // Matches every word of q in the title or description, the last word also as a prefix
+    @GetMapping("/search")
+    public ResponseEntity<List<TodoDto>> searchTodos(@RequestParam String q,
+                                                     @RequestParam(required = false) Integer limit) {
+        List<TodoDto> todos = todoSearchService.search(q, limit);
         return ResponseEntity.ok(todos);
     }
     
@@ -61,6 +144,16 @@ public class TodoController {
         return ResponseEntity.ok(toggled);
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<List<TodoBatchOperationDto>> applyBatch(@RequestBody List<TodoBatchOperationDto> operations) {
+        List<TodoBatchOperationDto> results = todoBatchService.applyBatch(operations);
+        return ResponseEntity.ok(results);
+    }
+    
+    // Rankings are relative to the todos sent: the todos of each category and done state are put in the order of
+    // their rankings among themselves, not at those absolute positions. Todos not sent keep their rank keys, and
+    // only the moved ones get new keys between their new neighbours among the todos sent; sending a whole column
+    // ranked 1..n, as the frontend does, sets exactly that order
     @PutMapping("/reorder")
     public ResponseEntity<List<TodoDto>> reorderTodos(@RequestBody List<TodoDto> todos) {
         List<TodoDto> reordered = todoService.reorderTodos(todos);
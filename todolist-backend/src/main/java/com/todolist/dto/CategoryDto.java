@@ -4,10 +4,15 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 public class CategoryDto {
     
+    // The properties a listing can be narrowed to with ?fields=
+    public static final List<String> FIELDS = List.of("id", "name", "dateCreated", "auditDateCreated",
+            "auditDateModified", "todoCount", "openTodoCount", "doneTodoCount");
+    
     private Long id;
     
     @NotBlank(message = "Category name is required")
@@ -19,6 +24,8 @@ public class CategoryDto {
     private LocalDateTime auditDateModified;
     
     private Long todoCount;
+    private Long openTodoCount;
+    private Long doneTodoCount;
 
     // Constructors
     public CategoryDto() {
@@ -84,6 +91,22 @@ public class CategoryDto {
         this.todoCount = todoCount;
     }
 
+    public Long getOpenTodoCount() {
+        return openTodoCount;
+    }
+
+    public void setOpenTodoCount(Long openTodoCount) {
+        this.openTodoCount = openTodoCount;
+    }
+
+    public Long getDoneTodoCount() {
+        return doneTodoCount;
+    }
+
+    public void setDoneTodoCount(Long doneTodoCount) {
+        this.doneTodoCount = doneTodoCount;
+    }
+
     // equals and hashCode
     @Override
     public boolean equals(Object o) {
@@ -95,12 +118,15 @@ public class CategoryDto {
                Objects.equals(dateCreated, that.dateCreated) &&
                Objects.equals(auditDateCreated, that.auditDateCreated) &&
                Objects.equals(auditDateModified, that.auditDateModified) &&
-               Objects.equals(todoCount, that.todoCount);
+               Objects.equals(todoCount, that.todoCount) &&
+               Objects.equals(openTodoCount, that.openTodoCount) &&
+               Objects.equals(doneTodoCount, that.doneTodoCount);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, dateCreated, auditDateCreated, auditDateModified, todoCount);
+        return Objects.hash(id, name, dateCreated, auditDateCreated, auditDateModified, todoCount,
+                           openTodoCount, doneTodoCount);
     }
 
     // toString
@@ -113,6 +139,8 @@ public class CategoryDto {
                ", auditDateCreated=" + auditDateCreated +
                ", auditDateModified=" + auditDateModified +
                ", todoCount=" + todoCount +
+               ", openTodoCount=" + openTodoCount +
+               ", doneTodoCount=" + doneTodoCount +
                '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.todolist.dto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The properties a listing was asked for with ?fields=, in a canonical order so equal sets have
+ * equal keys. Null names means every property.
+ */
+public record FieldSet(Set<String> names) {
+
+    public static final FieldSet ALL = new FieldSet(null);
+
+    // Comma separated names, each one of the allowed properties; null or blank for all
+    public static FieldSet parse(String fields, List<String> allowed) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = new TreeSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!allowed.contains(trimmed)) {
+                throw new RuntimeException("Unknown field '" + trimmed + "', expected some of " + String.join(",", allowed));
+            }
+            names.add(trimmed);
+        }
+        return names.containsAll(allowed) ? ALL : new FieldSet(Collections.unmodifiableSet(names));
+    }
+
+    public boolean isAll() {
+        return names == null;
+    }
+
+    public boolean has(String name) {
+        return names == null || names.contains(name);
+    }
+
+    public boolean hasAny(String... names) {
+        return Arrays.stream(names).anyMatch(this::has);
+    }
+
+    // Part of the listing cache key
+    public String key() {
+        return names == null ? "" : "?fields=" + String.join(",", names);
+    }
+}
@@ -0,0 +1,82 @@
+package com.todolist.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Objects;
+
+public class TodoBatchOperationDto {
+
+    public enum Operation {
+        CREATE, UPDATE, DELETE, TOGGLE
+    }
+
+    @NotNull(message = "Operation is required")
+    private Operation op;
+
+    // Target of UPDATE, DELETE and TOGGLE; set to the new id for CREATE in the response
+    private Long id;
+
+    // Payload of CREATE and UPDATE; the resulting todo in the response, null for DELETE
+    private TodoDto todo;
+
+    // Constructors
+    public TodoBatchOperationDto() {
+    }
+
+    public TodoBatchOperationDto(Operation op, Long id, TodoDto todo) {
+        this.op = op;
+        this.id = id;
+        this.todo = todo;
+    }
+
+    // Getters and Setters
+    public Operation getOp() {
+        return op;
+    }
+
+    public void setOp(Operation op) {
+        this.op = op;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public TodoDto getTodo() {
+        return todo;
+    }
+
+    public void setTodo(TodoDto todo) {
+        this.todo = todo;
+    }
+
+    // equals and hashCode
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TodoBatchOperationDto that = (TodoBatchOperationDto) o;
+        return op == that.op &&
+               Objects.equals(id, that.id) &&
+               Objects.equals(todo, that.todo);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(op, id, todo);
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "TodoBatchOperationDto{" +
+               "op=" + op +
+               ", id=" + id +
+               ", todo=" + todo +
+               '}';
+    }
+}
@@ -0,0 +1,78 @@
+package com.todolist.dto;
+
+import java.util.List;
+
+/**
+ * Response of GET /api/todos/changes. When {@code full} is set the todos and categories are the complete
+ * lists and replace the client's copy. Otherwise they are the todos created or modified since the token,
+ * with their current rankings, and every category whenever anything changed; todos the client holds that
+ * are not listed keep their relative order within their rank group. Todos of a deleted category are gone
+ * with it. Rows of the last seconds before the token may be returned again and are applied as upserts.
+ */
+public class TodoChangesDto {
+    private boolean full;
+    private List<TodoDto> todos;
+    private List<CategoryDto> categories;
+    private List<Long> deletedTodoIds;
+    private List<Long> deletedCategoryIds;
+    private String token;
+
+    public TodoChangesDto(boolean full, List<TodoDto> todos, List<CategoryDto> categories,
+                          List<Long> deletedTodoIds, List<Long> deletedCategoryIds, String token) {
+        this.full = full;
+        this.todos = todos;
+        this.categories = categories;
+        this.deletedTodoIds = deletedTodoIds;
+        this.deletedCategoryIds = deletedCategoryIds;
+        this.token = token;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<TodoDto> getTodos() {
+        return todos;
+    }
+
+    public void setTodos(List<TodoDto> todos) {
+        this.todos = todos;
+    }
+
+    public List<CategoryDto> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<CategoryDto> categories) {
+        this.categories = categories;
+    }
+
+    public List<Long> getDeletedTodoIds() {
+        return deletedTodoIds;
+    }
+
+    public void setDeletedTodoIds(List<Long> deletedTodoIds) {
+        this.deletedTodoIds = deletedTodoIds;
+    }
+
+    public List<Long> getDeletedCategoryIds() {
+        return deletedCategoryIds;
+    }
+
+    public void setDeletedCategoryIds(List<Long> deletedCategoryIds) {
+        this.deletedCategoryIds = deletedCategoryIds;
+    }
+
+    // Passed as ?since= on the next call
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -3,10 +3,15 @@ package com.todolist.dto;
 import jakarta.validation.constraints.*;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 public class TodoDto {
     
+    // The properties a listing can be narrowed to with ?fields=
+    public static final List<String> FIELDS = List.of("id", "title", "description", "ranking", "done",
+            "dateCreated", "auditDateCreated", "auditDateModified", "categoryName", "categoryId");
+    
     private Long id;
     
     @NotBlank(message = "Title is required")
@@ -17,7 +22,6 @@ public class TodoDto {
     private String description;
     
     @Min(value = 1, message = "Ranking must be at least 1")
-    @Max(value = 100, message = "Ranking must not exceed 100")
     @NotNull(message = "Ranking is required")
     private Integer ranking;
     
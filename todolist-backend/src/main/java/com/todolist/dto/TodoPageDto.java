@@ -0,0 +1,30 @@
+package com.todolist.dto;
+
+import java.util.List;
+
+public class TodoPageDto {
+    private List<TodoDto> items;
+    private String nextCursor;
+
+    public TodoPageDto(List<TodoDto> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TodoDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<TodoDto> items) {
+        this.items = items;
+    }
+
+    // Null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
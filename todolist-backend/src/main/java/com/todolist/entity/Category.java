@@ -3,6 +3,8 @@ package com.todolist.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
@@ -11,11 +13,12 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
-@Table(name = "categories")
+@Table(name = "categories", uniqueConstraints =
+        @UniqueConstraint(name = "uk_categories_user_name", columnNames = {"user_id", "name"}))
 public class Category {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("categories")
     private Long id;
     
     @NotBlank(message = "Category name is required")
@@ -38,6 +41,7 @@ public class Category {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonBackReference
     private User user;
     
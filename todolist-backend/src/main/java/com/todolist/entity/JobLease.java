@@ -0,0 +1,38 @@
+package com.todolist.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// The instance currently running a background job, and until when; see JobLeaseService
+@Entity
+@Table(name = "job_leases")
+public class JobLease {
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "owner", nullable = false, length = 36)
+    private String owner;
+
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+
+    // Constructors
+    public JobLease() {
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+}
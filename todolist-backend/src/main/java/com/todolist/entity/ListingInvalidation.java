@@ -0,0 +1,57 @@
+package com.todolist.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A user whose cached listings are stale on every node, written in the same transaction as the change
+@Entity
+@Table(name = "listing_invalidations", indexes =
+        @Index(name = "idx_listing_invalidations_created", columnList = "created_at"))
+public class ListingInvalidation {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    // Instance that made the change
+    @Column(name = "origin", length = 36)
+    private String origin;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public ListingInvalidation() {
+    }
+    
+    public ListingInvalidation(Long userId, String origin) {
+        this.userId = userId;
+        this.origin = origin;
+    }
+    
+    // Getters
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public String getOrigin() {
+        return origin;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
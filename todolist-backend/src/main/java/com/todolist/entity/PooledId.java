@@ -0,0 +1,22 @@
+package com.todolist.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An id handed out by {@link PooledIdGenerator} from the blocks of its row in id_generators.
+ */
+@IdGeneratorType(PooledIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledId {
+
+    // The sequence_name of the row
+    String value();
+
+    int allocationSize() default 50;
+}
@@ -0,0 +1,63 @@
+package com.todolist.entity;
+
+import com.todolist.repository.IdBlockAllocator;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out the ids of one row of id_generators in blocks of {@link PooledId#allocationSize()}, so
+ * inserts can be sent as JDBC batches. Hibernate's own table generator reserves a block on a second
+ * connection of the pool while the inserting transaction holds the first, which a pool full of such
+ * transactions never hands out; blocks are reserved through {@link IdBlockAllocator} instead, on a
+ * connection of its own. The table is still declared here, so schema generation creates it.
+ */
+public class PooledIdGenerator extends TableGenerator {
+
+    // The IdBlockAllocator in the Hibernate settings
+    public static final String ALLOCATOR = "todolist.id-block-allocator";
+
+    private final IdBlockAllocator allocator;
+    // Not synchronized, so a virtual thread reserving a block does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long last = -1;
+
+    public PooledIdGenerator(PooledId config, Member member, CustomIdGeneratorCreationContext context) {
+        Object allocator = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSettings().get(ALLOCATOR);
+        if (!(allocator instanceof IdBlockAllocator idBlockAllocator)) {
+            throw new IllegalStateException(ALLOCATOR + " holds no IdBlockAllocator for the id of " + member);
+        }
+        this.allocator = idBlockAllocator;
+
+        Properties properties = new Properties();
+        properties.put(TABLE_PARAM, IdBlockAllocator.TABLE);
+        properties.put(SEGMENT_COLUMN_PARAM, IdBlockAllocator.NAME_COLUMN);
+        properties.put(VALUE_COLUMN_PARAM, IdBlockAllocator.VALUE_COLUMN);
+        properties.put(SEGMENT_VALUE_PARAM, config.value());
+        properties.put(OptimizableGenerator.INCREMENT_PARAM, String.valueOf(config.allocationSize()));
+        configure(context.getDatabase().getTypeConfiguration().getBasicTypeForJavaType(Long.class), properties,
+                context.getServiceRegistry());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner) {
+        lock.lock();
+        try {
+            if (next > last) {
+                last = allocator.allocate(getSegmentValue(), getIncrementSize());
+                next = last - getIncrementSize() + 1;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,17 +2,23 @@ package com.todolist.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "todos")
+@Table(name = "todos", indexes = {
+        @Index(name = "idx_todos_user_category_done_rank", columnList = "user_id, category_id, done, rank_key"),
+        @Index(name = "idx_todos_category_done_rank", columnList = "category_id, done, rank_key, id"),
+        @Index(name = "idx_todos_user_modified", columnList = "user_id, audit_date_modified")
+})
 public class Todo {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("todos")
     private Long id;
     
     @NotBlank(message = "Title is required")
@@ -23,10 +29,9 @@ public class Todo {
     @Size(max = 500, message = "Description must not exceed 500 characters")
     private String description;
     
-    @Min(value = 1, message = "Ranking must be at least 1")
-    @Max(value = 100, message = "Ranking must not exceed 100")
-    @Column(nullable = false)
-    private Integer ranking;
+    // Sparse ordering key within the category and done state; the API exposes the dense position instead
+    @Column(name = "rank_key", nullable = false)
+    private Long rankKey;
     
     @Column(nullable = false)
     private Boolean done = false;
@@ -42,11 +47,13 @@ public class Todo {
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonBackReference
     private Category category;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonBackReference
     private User user;
     
@@ -70,13 +77,13 @@ public class Todo {
     public Todo() {
     }
 
-    public Todo(Long id, String title, String description, Integer ranking, Boolean done, 
+    public Todo(Long id, String title, String description, Long rankKey, Boolean done, 
                 LocalDateTime dateCreated, LocalDateTime auditDateCreated, 
                 LocalDateTime auditDateModified, Category category) {
         this.id = id;
         this.title = title;
         this.description = description;
-        this.ranking = ranking;
+        this.rankKey = rankKey;
         this.done = done;
         this.dateCreated = dateCreated;
         this.auditDateCreated = auditDateCreated;
@@ -109,12 +116,12 @@ public class Todo {
         this.description = description;
     }
 
-    public Integer getRanking() {
-        return ranking;
+    public Long getRankKey() {
+        return rankKey;
     }
 
-    public void setRanking(Integer ranking) {
-        this.ranking = ranking;
+    public void setRankKey(Long rankKey) {
+        this.rankKey = rankKey;
     }
 
     public Boolean getDone() {
@@ -174,7 +181,7 @@ public class Todo {
         return Objects.equals(id, todo.id) &&
                Objects.equals(title, todo.title) &&
                Objects.equals(description, todo.description) &&
-               Objects.equals(ranking, todo.ranking) &&
+               Objects.equals(rankKey, todo.rankKey) &&
                Objects.equals(done, todo.done) &&
                Objects.equals(dateCreated, todo.dateCreated) &&
                Objects.equals(auditDateCreated, todo.auditDateCreated) &&
@@ -183,7 +190,7 @@ public class Todo {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, title, description, ranking, done, dateCreated, 
+        return Objects.hash(id, title, description, rankKey, done, dateCreated, 
                            auditDateCreated, auditDateModified);
     }
 
@@ -194,7 +201,7 @@ public class Todo {
                "id=" + id +
                ", title='" + title + '\'' +
                ", description='" + description + '\'' +
-               ", ranking=" + ranking +
+               ", rankKey=" + rankKey +
                ", done=" + done +
                ", dateCreated=" + dateCreated +
                ", auditDateCreated=" + auditDateCreated +
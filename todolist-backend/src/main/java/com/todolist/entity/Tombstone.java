@@ -0,0 +1,72 @@
+package com.todolist.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Record of a deleted todo or category, so that delta sync can report deletions
+@Entity
+@Table(name = "tombstones", indexes = {
+        @Index(name = "idx_tombstones_user_deleted", columnList = "user_id, deleted_at"),
+        @Index(name = "idx_tombstones_deleted", columnList = "deleted_at")
+})
+public class Tombstone {
+    
+    public enum EntityType {
+        TODO, CATEGORY
+    }
+    
+    @Id
+    @PooledId("tombstones")
+    private Long id;
+    
+    // No foreign key, so tombstones never block deleting the user
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private EntityType entityType;
+    
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+    
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        deletedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public Tombstone() {
+    }
+    
+    public Tombstone(Long userId, EntityType entityType, Long entityId) {
+        this.userId = userId;
+        this.entityType = entityType;
+        this.entityId = entityId;
+    }
+    
+    // Getters
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public EntityType getEntityType() {
+        return entityType;
+    }
+    
+    public Long getEntityId() {
+        return entityId;
+    }
+    
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+}
@@ -4,17 +4,21 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_email_validation_token", columnList = "email_validation_token"),
+        @Index(name = "idx_users_validated_token_expiry", columnList = "email_validated, email_validation_token_expiry")
+})
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("users")
     private Long id;
 
     @NotBlank(message = "Username is required")
@@ -50,6 +54,11 @@ public class User {
     @Column(name = "email_validation_token_expiry")
     private LocalDateTime emailValidationTokenExpiry;
 
+    // Bumped by every change to the user's todos or categories; only written with UserRepository.incrementDataVersion
+    @ColumnDefault("0")
+    @Column(name = "data_version", nullable = false, insertable = false, updatable = false)
+    private long dataVersion;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Todo> todos = new ArrayList<>();
 
@@ -174,4 +183,8 @@ public class User {
     public void setEmailValidationTokenExpiry(LocalDateTime emailValidationTokenExpiry) {
         this.emailValidationTokenExpiry = emailValidationTokenExpiry;
     }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
 
@@ -17,8 +18,15 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     
     boolean existsByUserAndName(User user, String name);
     
+    List<Category> findByUserOrderByNameAsc(User user);
+    
+    // The category after a name in the order of findByUserOrderByNameAsc, which is the database's collation
+    Optional<Category> findFirstByUserAndNameGreaterThanOrderByNameAsc(User user, String name);
+    
     @Query("SELECT c FROM Category c WHERE c.user = :user ORDER BY c.auditDateCreated ASC")
     List<Category> findByUserOrderByCreated(@Param("user") User user);
     
     Optional<Category> findByIdAndUser(Long id, User user);
+    
+    boolean existsByUserAndAuditDateModifiedGreaterThanEqual(User user, LocalDateTime since);
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.todolist.repository;
+
+// Per-category todo totals returned by the grouped count queries of TodoRepository
+public interface CategoryTodoCount {
+
+    Long getCategoryId();
+
+    Long getTotal();
+
+    Long getDone();
+}
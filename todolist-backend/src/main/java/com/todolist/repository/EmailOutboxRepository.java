@@ -0,0 +1,50 @@
+package com.todolist.repository;
+
+import com.todolist.entity.OutboxEmail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// The sender works outside of a transaction, so every update here commits on its own
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<OutboxEmail, Long> {
+
+    @Query("SELECT e.id FROM OutboxEmail e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Emails another sender claimed in the meantime are left out, as their due time moved to its lease
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEmail e SET e.claim = :claim, e.nextAttemptAt = :leaseUntil " +
+           "WHERE e.id IN :ids AND e.status = 'PENDING' AND e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claim") String claim,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<OutboxEmail> findByClaim(String claim);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEmail e SET e.status = 'SENT', e.sentAt = :sentAt, e.attempts = e.attempts + 1 " +
+           "WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEmail e SET e.status = :status, e.attempts = e.attempts + 1, " +
+           "e.nextAttemptAt = :nextAttemptAt, e.lastError = :error WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("status") OutboxEmail.Status status,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEmail e WHERE e.status = 'SENT' AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
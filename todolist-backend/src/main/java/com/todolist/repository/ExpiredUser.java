@@ -0,0 +1,9 @@
+package com.todolist.repository;
+
+// An account found by the cleanup job; the username is needed to evict it from AuthenticatedUserCache
+public interface ExpiredUser {
+
+    Long getId();
+
+    String getUsername();
+}
@@ -0,0 +1,81 @@
+package com.todolist.repository;
+
+import com.todolist.entity.PooledIdGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reserves blocks of ids in id_generators for {@link PooledIdGenerator}. Each reservation commits on
+ * its own, on a pool of app.id-blocks.pool-size connections to the same database that nothing else
+ * borrows from, so an insert never waits for a second connection of the pool its transaction holds
+ * one of. A row holds the upper end of the next block, as changeset 007 seeded it.
+ */
+@Component
+public class IdBlockAllocator implements HibernatePropertiesCustomizer {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+
+    public IdBlockAllocator(DataSourceProperties properties, @Value("${app.id-blocks.pool-size:2}") int poolSize) {
+        this.dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("id-blocks");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(0);
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    // Hands this allocator to the generators Hibernate creates
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(PooledIdGenerator.ALLOCATOR, this);
+    }
+
+    // Returns the last id of the block; a row that is missing, empty
+    // or below one block, like the 0 schema generation inserts, starts at 1
+    public long allocate(String name, int size) {
+        try {
+            return reserve(name, size);
+        } catch (DuplicateKeyException e) {
+            // Another reservation inserted the missing row first; this one now finds it and locks it
+            return reserve(name, size);
+        }
+    }
+
+    private long reserve(String name, int size) {
+        return transaction.execute(status -> {
+            List<Long> values = jdbc.queryForList("SELECT " + VALUE_COLUMN + " FROM " + TABLE + " WHERE "
+                    + NAME_COLUMN + " = ? FOR UPDATE", Long.class, name);
+            long last = values.isEmpty() || values.get(0) == null ? size : Math.max(values.get(0), size);
+            if (values.isEmpty()) {
+                jdbc.update("INSERT INTO " + TABLE + " (" + NAME_COLUMN + ", " + VALUE_COLUMN + ") VALUES (?, ?)",
+                        name, last + size);
+            } else {
+                jdbc.update("UPDATE " + TABLE + " SET " + VALUE_COLUMN + " = ? WHERE " + NAME_COLUMN + " = ?",
+                        last + size, name);
+            }
+            return last;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+}
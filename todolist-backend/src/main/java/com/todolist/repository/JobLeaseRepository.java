@@ -0,0 +1,36 @@
+package com.todolist.repository;
+
+import com.todolist.entity.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+// Each statement commits on its own and decides the lease atomically in the database
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    // Takes over an expired lease, or extends one this owner already holds
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.owner = :owner, l.leaseUntil = :leaseUntil " +
+           "WHERE l.name = :name AND (l.leaseUntil < :now OR l.owner = :owner)")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // The first acquisition of a job; fails on the primary key when another instance inserted it first
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO job_leases (name, owner, lease_until) VALUES (:name, :owner, :leaseUntil)",
+           nativeQuery = true)
+    int create(@Param("name") String name, @Param("owner") String owner, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.leaseUntil = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
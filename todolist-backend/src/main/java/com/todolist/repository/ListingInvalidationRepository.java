@@ -0,0 +1,22 @@
+package com.todolist.repository;
+
+import com.todolist.entity.ListingInvalidation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ListingInvalidationRepository extends JpaRepository<ListingInvalidation, Long> {
+    
+    @Query("SELECT i FROM ListingInvalidation i WHERE i.createdAt > :since")
+    List<ListingInvalidation> findCreatedAfter(@Param("since") LocalDateTime since);
+    
+    @Modifying
+    @Query("DELETE FROM ListingInvalidation i WHERE i.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,22 @@
+package com.todolist.repository;
+
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Category;
+import com.todolist.entity.User;
+
+import java.util.List;
+
+/**
+ * The listing queries of TodoRepository narrowed to the columns of the requested fields. The id, done
+ * state and category id are read whatever the fields, since rankings and cursors are counted from them;
+ * the other properties of the returned DTOs are left null unless requested.
+ */
+public interface TodoListingRepository {
+
+    // All of the user's todos, or those of one category if it is not null, in listing order
+    List<TodoDto> findListing(User user, Category category, FieldSet fields);
+
+    // As findListingPage of TodoRepository
+    List<TodoDto> findListingPage(Long categoryId, Boolean done, Long rankKey, Long id, int limit, FieldSet fields);
+}
@@ -0,0 +1,89 @@
+package com.todolist.repository;
+
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Category;
+import com.todolist.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+class TodoListingRepositoryImpl implements TodoListingRepository {
+
+    private record Column(String field, String expression, BiConsumer<TodoDto, Object> setter) {
+    }
+
+    // Read after t.id, c.id and t.done, when their field is requested
+    private static final List<Column> COLUMNS = List.of(
+            new Column("title", "t.title", (dto, value) -> dto.setTitle((String) value)),
+            new Column("description", "t.description", (dto, value) -> dto.setDescription((String) value)),
+            new Column("dateCreated", "t.dateCreated", (dto, value) -> dto.setDateCreated((LocalDateTime) value)),
+            new Column("auditDateCreated", "t.auditDateCreated", (dto, value) -> dto.setAuditDateCreated((LocalDateTime) value)),
+            new Column("auditDateModified", "t.auditDateModified", (dto, value) -> dto.setAuditDateModified((LocalDateTime) value)),
+            new Column("categoryName", "c.name", (dto, value) -> dto.setCategoryName((String) value)));
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TodoDto> findListing(User user, Category category, FieldSet fields) {
+        List<Column> columns = columns(fields);
+        TypedQuery<Object[]> query;
+        if (category == null) {
+            query = entityManager.createQuery(select(columns) + " WHERE t.user = :user "
+                    + "ORDER BY c.name ASC, t.done ASC, t.rankKey ASC, t.id ASC", Object[].class);
+        } else {
+            query = entityManager.createQuery(select(columns) + " WHERE t.user = :user AND c = :category "
+                    + "ORDER BY t.done ASC, t.rankKey ASC, t.id ASC", Object[].class)
+                    .setParameter("category", category);
+        }
+        return toDtos(query.setParameter("user", user).getResultList(), columns);
+    }
+
+    @Override
+    public List<TodoDto> findListingPage(Long categoryId, Boolean done, Long rankKey, Long id, int limit, FieldSet fields) {
+        List<Column> columns = columns(fields);
+        List<Object[]> rows = entityManager.createQuery(select(columns) + " WHERE t.category.id = :categoryId "
+                        + "AND t.done = :done AND (t.rankKey > :rankKey OR (t.rankKey = :rankKey AND t.id > :id)) "
+                        + "ORDER BY t.rankKey ASC, t.id ASC", Object[].class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("done", done)
+                .setParameter("rankKey", rankKey)
+                .setParameter("id", id)
+                .setMaxResults(limit)
+                .getResultList();
+        return toDtos(rows, columns);
+    }
+
+    private static List<Column> columns(FieldSet fields) {
+        return COLUMNS.stream().filter(column -> fields.has(column.field())).toList();
+    }
+
+    private static String select(List<Column> columns) {
+        StringBuilder select = new StringBuilder("SELECT t.id, c.id, t.done");
+        for (Column column : columns) {
+            select.append(", ").append(column.expression());
+        }
+        return select.append(" FROM Todo t JOIN t.category c").toString();
+    }
+
+    private static List<TodoDto> toDtos(List<Object[]> rows, List<Column> columns) {
+        List<TodoDto> dtos = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            TodoDto dto = new TodoDto();
+            dto.setId((Long) row[0]);
+            dto.setCategoryId((Long) row[1]);
+            dto.setDone((Boolean) row[2]);
+            for (int i = 0; i < columns.size(); i++) {
+                columns.get(i).setter().accept(dto, row[3 + i]);
+            }
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,5 @@
+package com.todolist.repository;
+
+// The rank key of a todo, read under lock by RankingService before it computes new keys
+public record TodoRankKey(Long id, Long rankKey) {
+}
@@ -1,34 +1,104 @@
 package com.todolist.repository;
 
+import com.todolist.dto.TodoDto;
 import com.todolist.entity.Todo;
 import com.todolist.entity.Category;
 import com.todolist.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TodoRepository extends JpaRepository<Todo, Long> {
+public interface TodoRepository extends JpaRepository<Todo, Long>, TodoListingRepository {
     
-    List<Todo> findByUserAndCategoryOrderByRankingAsc(User user, Category category);
+    String LISTING_COLUMNS = "new com.todolist.dto.TodoDto(t.id, t.title, t.description, 0, t.done, "
+            + "t.dateCreated, t.auditDateCreated, t.auditDateModified, c.name, c.id)";
     
-    List<Todo> findByUserAndCategoryAndDoneOrderByRankingAsc(User user, Category category, Boolean done);
+    // The rank group reads of RankingService lock the rows they return until the keys computed from them are
+    // written, so a placement waits for a running rebalance of its group and then reads its new keys. They lock
+    // in rank order, or only the last rows when appending, so placements and rebalances do not deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.todolist.repository.TodoRankKey(t.id, t.rankKey) FROM Todo t WHERE t.category.id = :categoryId AND t.done = :done ORDER BY t.rankKey ASC, t.id ASC")
+    List<TodoRankKey> lockRankKeys(@Param("categoryId") Long categoryId, @Param("done") Boolean done, Pageable pageable);
     
-    @Query("SELECT t FROM Todo t WHERE t.user = :user AND t.category = :category AND t.ranking = :ranking AND t.done = false")
-    Optional<Todo> findByUserAndCategoryAndRankingAndNotDone(@Param("user") User user, @Param("category") Category category, @Param("ranking") Integer ranking);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.todolist.repository.TodoRankKey(t.id, t.rankKey) FROM Todo t WHERE t.category.id = :categoryId AND t.done = :done ORDER BY t.rankKey DESC, t.id DESC")
+    List<TodoRankKey> lockLastRankKeys(@Param("categoryId") Long categoryId, @Param("done") Boolean done, Pageable pageable);
     
-    @Query("SELECT t FROM Todo t WHERE t.user = :user AND t.category = :category AND t.ranking >= :ranking AND t.done = false ORDER BY t.ranking ASC")
-    List<Todo> findByUserAndCategoryAndRankingGreaterThanEqualAndNotDoneOrderByRanking(@Param("user") User user, @Param("category") Category category, @Param("ranking") Integer ranking);
+    // Both rank groups of each category
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.todolist.repository.TodoRankKey(t.id, t.rankKey) FROM Todo t WHERE t.category.id IN :categoryIds ORDER BY t.category.id ASC, t.done ASC, t.rankKey ASC, t.id ASC")
+    List<TodoRankKey> lockCategoryRankKeys(@Param("categoryIds") Collection<Long> categoryIds);
     
-    @Query("SELECT COUNT(t) FROM Todo t WHERE t.user = :user AND t.category = :category")
-    Long countByUserAndCategory(@Param("user") User user, @Param("category") Category category);
+    @Query("SELECT COUNT(t) FROM Todo t WHERE t.category = :category AND t.done = :done AND (t.rankKey < :rankKey OR (t.rankKey = :rankKey AND t.id < :id))")
+    Long countRankedBefore(@Param("category") Category category, @Param("done") Boolean done, @Param("rankKey") Long rankKey, @Param("id") Long id);
     
-    @Query("SELECT t FROM Todo t WHERE t.user = :user ORDER BY t.category.name ASC, t.done ASC, t.ranking ASC")
-    List<Todo> findByUserOrderedByCategoryAndCompletion(@Param("user") User user);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Todo t WHERE t.category.id = :categoryId AND t.done = :done ORDER BY t.rankKey ASC, t.id ASC")
+    List<Todo> findRankGroup(@Param("categoryId") Long categoryId, @Param("done") Boolean done);
+    
+    // Both rank groups of each category, for RankingService.Placement.load
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Todo t WHERE t.category.id IN :categoryIds ORDER BY t.category.id ASC, t.done ASC, t.rankKey ASC, t.id ASC")
+    List<Todo> findRankGroups(@Param("categoryIds") Collection<Long> categoryIds);
+    
+    @Query("SELECT t.category.id AS categoryId, COUNT(t) AS total, SUM(CASE WHEN t.done = true THEN 1 ELSE 0 END) AS done FROM Todo t WHERE t.user = :user GROUP BY t.category.id")
+    List<CategoryTodoCount> countByUserGroupedByCategory(@Param("user") User user);
+    
+    @Query("SELECT t.category.id AS categoryId, COUNT(t) AS total, SUM(CASE WHEN t.done = true THEN 1 ELSE 0 END) AS done FROM Todo t WHERE t.category = :category GROUP BY t.category.id")
+    Optional<CategoryTodoCount> countByCategory(@Param("category") Category category);
+    
+    // Listings are read as DTOs straight from the result set; ranking is left at 0 and counted by the caller
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.user = :user ORDER BY c.name ASC, t.done ASC, t.rankKey ASC, t.id ASC")
+    List<TodoDto> findListingByUser(@Param("user") User user);
+    
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.user = :user AND c = :category ORDER BY t.done ASC, t.rankKey ASC, t.id ASC")
+    List<TodoDto> findListingByUserAndCategory(@Param("user") User user, @Param("category") Category category);
+    
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.user = :user AND c.id IN :categoryIds ORDER BY c.name ASC, t.done ASC, t.rankKey ASC, t.id ASC")
+    List<TodoDto> findListingByUserAndCategoryIds(@Param("user") User user, @Param("categoryIds") Collection<Long> categoryIds);
+    
+    // Read through a database cursor, 500 rows a fetch (on MySQL with the useCursorFetch DataSourceConfig sets);
+    // the caller must close the stream inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.user = :user ORDER BY c.name ASC, t.done ASC, t.rankKey ASC, t.id ASC")
+    Stream<TodoDto> streamListingByUser(@Param("user") User user);
+    
+    // One rank group, after the given (rank key, id) position; seeks on idx_todos_category_done_rank
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.category.id = :categoryId AND t.done = :done AND (t.rankKey > :rankKey OR (t.rankKey = :rankKey AND t.id > :id)) ORDER BY t.rankKey ASC, t.id ASC")
+    List<TodoDto> findListingPage(@Param("categoryId") Long categoryId, @Param("done") Boolean done, @Param("rankKey") Long rankKey, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT DISTINCT t.category.id FROM Todo t WHERE t.user = :user AND t.auditDateModified >= :since")
+    List<Long> findCategoryIdsModifiedSince(@Param("user") User user, @Param("since") LocalDateTime since);
+    
+    @Query("SELECT t.rankKey FROM Todo t WHERE t.id = :id")
+    Long findRankKeyById(@Param("id") Long id);
+    
+    // Null once the todo has left the rank group, or was deleted
+    @Query("SELECT t.rankKey FROM Todo t WHERE t.id = :id AND t.category.id = :categoryId AND t.done = :done")
+    Long findRankKeyInGroup(@Param("id") Long id, @Param("categoryId") Long categoryId, @Param("done") Boolean done);
+    
+    // Read once per user when their search index is built
+    @Query("SELECT new com.todolist.repository.TodoText(t.id, t.category.id, t.title, t.description) FROM Todo t WHERE t.user = :user")
+    List<TodoText> findTextByUser(@Param("user") User user);
+    
+    @Query("SELECT " + LISTING_COLUMNS + " FROM Todo t JOIN t.category c WHERE t.user = :user AND t.id IN :ids")
+    List<TodoDto> findListingByUserAndIdIn(@Param("user") User user, @Param("ids") Collection<Long> ids);
     
     Optional<Todo> findByIdAndUser(Long id, User user);
-}
\ No newline at end of file
+    
+    List<Todo> findByUserAndIdIn(User user, Collection<Long> ids);
+}
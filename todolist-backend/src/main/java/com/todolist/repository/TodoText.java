@@ -0,0 +1,5 @@
+package com.todolist.repository;
+
+// The searchable text of a todo, read by TodoSearchIndex when it indexes a user
+public record TodoText(Long id, Long categoryId, String title, String description) {
+}
@@ -0,0 +1,22 @@
+package com.todolist.repository;
+
+import com.todolist.entity.Tombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+    
+    @Query("SELECT t FROM Tombstone t WHERE t.userId = :userId AND t.deletedAt >= :since")
+    List<Tombstone> findDeletedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    @Modifying
+    @Query("DELETE FROM Tombstone t WHERE t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,11 +1,16 @@
 package com.todolist.repository;
 
 import com.todolist.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +22,25 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
     Optional<User> findByEmailValidationToken(String emailValidationToken);
 
-    @Query("SELECT u FROM User u WHERE u.emailValidated = false AND u.emailValidationTokenExpiry < :expiry")
-    List<User> findExpiredUnvalidatedUsers(LocalDateTime expiry);
-}
\ No newline at end of file
+    @Query("SELECT u.id AS id, u.username AS username FROM User u " +
+           "WHERE u.emailValidated = false AND u.emailValidationTokenExpiry < :expiry")
+    List<ExpiredUser> findExpiredUnvalidatedUsers(@Param("expiry") LocalDateTime expiry, Pageable pageable);
+
+    // Categories and todos go with the users through ON DELETE CASCADE; users validated in the meantime are kept
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN :ids " +
+           "AND u.emailValidated = false AND u.emailValidationTokenExpiry < :expiry")
+    int deleteExpiredUnvalidatedUsers(@Param("ids") Collection<Long> ids, @Param("expiry") LocalDateTime expiry);
+
+    @Query("SELECT u.dataVersion FROM User u WHERE u.id = :id")
+    Optional<Long> findDataVersionById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.dataVersion = u.dataVersion + 1 WHERE u.id = :id")
+    int incrementDataVersion(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+}
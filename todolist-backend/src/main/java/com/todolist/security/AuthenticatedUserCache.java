@@ -0,0 +1,60 @@
+package com.todolist.security;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Principals of recently authenticated users, keyed by username, so that a bearer token
+ * can be turned into a principal without a users query on every request.
+ * Entries must be evicted whenever the user row is changed or deleted.
+ */
+@Component
+public class AuthenticatedUserCache {
+
+    private final AsyncCache<String, UserPrincipal> cache;
+
+    public AuthenticatedUserCache(@Value("${app.user-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${app.user-cache.expiration:300}") long expirationSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expirationSeconds))
+                .buildAsync();
+    }
+
+    // The loader runs on the calling thread outside the cache's locks, so a virtual thread waiting for the
+    // users query is not pinned; concurrent callers for the same user wait for that one load
+    public UserPrincipal get(String username, Function<String, UserPrincipal> loader) {
+        CompletableFuture<UserPrincipal> loading = new CompletableFuture<>();
+        CompletableFuture<UserPrincipal> cached = cache.asMap().putIfAbsent(username, loading);
+        if (cached != null) {
+            return join(cached);
+        }
+        try {
+            loading.complete(loader.apply(username));
+        } catch (RuntimeException e) {
+            // A failed load is removed from the cache by Caffeine
+            loading.completeExceptionally(e);
+            throw e;
+        }
+        return join(loading);
+    }
+
+    public void evict(String username) {
+        cache.synchronous().invalidate(username);
+    }
+
+    private static UserPrincipal join(CompletableFuture<UserPrincipal> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
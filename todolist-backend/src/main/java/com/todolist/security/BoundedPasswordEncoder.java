@@ -0,0 +1,132 @@
+package com.todolist.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt on a fixed pool of hashing threads, by default one per available processor, so a burst of
+ * logins or signups hashes as fast as the machine can while request threads keep their share of the
+ * CPU. Work beyond the pool waits its turn in a queue for up to the maximum wait; a request whose
+ * hashing has not started by then, or that finds the queue full, fails with
+ * {@link PasswordHashingBusyException}, answered with 503 and Retry-After. Hashes made with a
+ * different cost than the configured one are reported for re-hashing, which
+ * DaoAuthenticationProvider does on the next successful login.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+    private final ThreadPoolExecutor hashers;
+    private final long maxWaitNanos;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    // threads 0 for one per available processor
+    public BoundedPasswordEncoder(int strength, int threads, int queueCapacity, Duration maxWait,
+                                  MeterRegistry meterRegistry) {
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.hashers = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofPlatform().name("password-hasher-", 0).factory());
+        this.maxWaitNanos = maxWait.toNanos();
+        this.encodeTimer = timer(meterRegistry, "encode");
+        this.matchesTimer = timer(meterRegistry, "matches");
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .description("Password hashing requests shed because the queue was full or their turn did not come in time")
+                .register(meterRegistry);
+        // executor.queued, executor.active, executor.completed etc. with name=password-hashing
+        ExecutorServiceMetrics.monitor(meterRegistry, hashers, "password-hashing");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("password.hashing")
+                .tag("operation", operation)
+                .description("Time to hash or verify a password, including the wait in the queue")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    // Any other cost, higher or lower, is replaced by the configured one
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    public void shutdown() {
+        hashers.shutdown();
+    }
+
+    private <T> T run(Timer timer, Callable<T> work) {
+        long start = System.nanoTime();
+        try {
+            Future<T> hashing;
+            try {
+                hashing = hashers.submit(work);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw new PasswordHashingBusyException();
+            }
+            try {
+                return hashing.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Dropped while still in the queue; once started it finishes within one hash
+                if (hashers.remove((Runnable) hashing)) {
+                    rejected.increment();
+                    throw new PasswordHashingBusyException();
+                }
+                return hashing.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Thrown when the hashing queue is full or the wait for a hashing thread timed out; the client should retry later.
+     */
+    public static class PasswordHashingBusyException extends RuntimeException {
+
+        public PasswordHashingBusyException() {
+            super("Too many logins and signups at the moment, please retry shortly");
+        }
+    }
+}
@@ -4,29 +4,45 @@ import com.todolist.entity.User;
 import com.todolist.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+
     @Override
     @Transactional
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    public UserPrincipal loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                new ArrayList<>()
-        );
+        return UserPrincipal.create(user);
+    }
+
+    // Used for bearer token requests, where the password hash is not needed
+    public UserPrincipal loadAuthenticatedUser(String username) throws UsernameNotFoundException {
+        return authenticatedUserCache.get(username, name -> {
+            UserPrincipal principal = loadUserByUsername(name);
+            principal.eraseCredentials();
+            return principal;
+        });
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserPrincipal principal = (UserPrincipal) user;
+        userRepository.updatePassword(principal.getId(), newPassword);
+        return new UserPrincipal(principal.getId(), principal.getUsername(), principal.getEmail(),
+                                 principal.isEmailValidated(), newPassword);
     }
-}
\ No newline at end of file
+}
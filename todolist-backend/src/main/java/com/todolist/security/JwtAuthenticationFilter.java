@@ -7,7 +7,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -17,6 +16,8 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final String EVENTS_PATH = "/api/events";
+
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
@@ -34,23 +35,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
             jwtToken = requestTokenHeader.substring(7);
+        } else if (EVENTS_PATH.equals(request.getRequestURI())) {
+            // Browsers cannot set headers on an EventSource, so the event stream also takes the token as a parameter
+            jwtToken = request.getParameter("access_token");
+        }
+
+        if (jwtToken != null) {
             try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+                // Verifies signature and expiration once; the subject can be trusted from here on
+                username = jwtTokenUtil.getVerifiedClaims(jwtToken).getSubject();
             } catch (Exception e) {
                 logger.error("Unable to get JWT Token", e);
             }
         }
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            UserPrincipal principal = this.userDetailsService.loadAuthenticatedUser(username);
+
+            UsernamePasswordAuthenticationToken authToken = 
+                new UsernamePasswordAuthenticationToken(
+                    principal, null, principal.getAuthorities());
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
         chain.doFilter(request, response);
     }
@@ -0,0 +1,150 @@
+package com.todolist.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rate limits the auth endpoints per client IP and the rest of the API per user, or per IP for
+ * requests without a user, before any password is hashed or any row is read. Each route has its own
+ * token bucket per client, configured as app.rate-limit.&lt;route&gt;.capacity and .refill (tokens
+ * per second); a request finding its bucket empty gets 429 with Retry-After. Runs after
+ * JwtAuthenticationFilter, which has identified the user by then.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    enum Route {
+        LOGIN("login", "POST", "/api/auth/login", 10, 0.2),
+        SIGNUP("signup", "POST", "/api/auth/signup", 5, 0.05),
+        VALIDATE_EMAIL("validate-email", "GET", "/api/email/validate-email", 10, 0.1),
+        API("api", null, "/api/", 200, 50);
+
+        private final String name;
+        private final String method;
+        private final String path;
+        private final int capacity;
+        private final double refill;
+
+        Route(String name, String method, String path, int capacity, double refill) {
+            this.name = name;
+            this.method = method;
+            this.path = path;
+            this.capacity = capacity;
+            this.refill = refill;
+        }
+
+        // The API route takes every other request under its path
+        boolean matches(HttpServletRequest request) {
+            return this == API ? request.getRequestURI().startsWith(path)
+                    : method.equals(request.getMethod()) && path.equals(request.getRequestURI());
+        }
+    }
+
+    private record Bucket(Route route, String client) {
+    }
+
+    private final boolean enabled;
+    private final RateLimiter rateLimiter;
+    private final Map<Route, RateLimiter.Limit> limits = new EnumMap<>(Route.class);
+    private final Map<Route, Counter> rejected = new EnumMap<>(Route.class);
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(Environment environment, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.enabled = environment.getProperty("app.rate-limit.enabled", Boolean.class, true);
+        Duration idle = Duration.ZERO;
+        for (Route route : Route.values()) {
+            RateLimiter.Limit limit = new RateLimiter.Limit(
+                    environment.getProperty("app.rate-limit." + route.name + ".capacity", Integer.class, route.capacity),
+                    environment.getProperty("app.rate-limit." + route.name + ".refill", Double.class, route.refill));
+            if (limit.capacity() < 1 || limit.refillPerSecond() <= 0) {
+                throw new IllegalStateException("app.rate-limit." + route.name + " needs a positive capacity and refill");
+            }
+            limits.put(route, limit);
+            idle = limit.timeToFill().compareTo(idle) > 0 ? limit.timeToFill() : idle;
+            rejected.put(route, Counter.builder("rate.limit.rejected")
+                    .tag("route", route.name)
+                    .description("Requests answered with 429 because the client's token bucket was empty")
+                    .register(meterRegistry));
+        }
+        this.rateLimiter = new RateLimiter(
+                environment.getProperty("app.rate-limit.maximum-buckets", Long.class, 100_000L), idle);
+        this.objectMapper = objectMapper;
+        Gauge.builder("rate.limit.buckets", rateLimiter, RateLimiter::size)
+                .description("Token buckets held in memory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Route route = route(request);
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long waitNanos = rateLimiter.tryAcquire(new Bucket(route, client(route, request)), limits.get(route));
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        rejected.get(route).increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("timestamp", LocalDateTime.now());
+        error.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        error.put("error", HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        error.put("message", "Too many requests, retry in " + retryAfterSeconds + " seconds");
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
+    private static Route route(HttpServletRequest request) {
+        for (Route route : Route.values()) {
+            if (route.matches(request)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    // The auth routes by IP, since who is asking is what they are about to prove. Behind a proxy the
+    // remote address is the client's from X-Forwarded-For, see server.forward-headers-strategy
+    private static String client(Route route, HttpServletRequest request) {
+        if (route == Route.API) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal user) {
+                return "user:" + user.getId();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
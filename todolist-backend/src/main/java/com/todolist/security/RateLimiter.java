@@ -0,0 +1,59 @@
+package com.todolist.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets, one per key, each a single AtomicLong updated with compare-and-set: the time at
+ * which the bucket would be full again (the generic cell rate algorithm), so taking a token needs
+ * no lock and no timer. A bucket idle for {@code idle} is full anyway and may be evicted, and at
+ * most {@code maximumBuckets} are kept.
+ */
+public class RateLimiter {
+
+    // capacity is the burst allowed from a full bucket, refillPerSecond the rate it fills up again
+    public record Limit(int capacity, double refillPerSecond) {
+
+        long intervalNanos() {
+            return (long) (1_000_000_000L / refillPerSecond);
+        }
+
+        Duration timeToFill() {
+            return Duration.ofNanos(intervalNanos() * capacity);
+        }
+    }
+
+    private final Cache<Object, AtomicLong> buckets;
+
+    public RateLimiter(long maximumBuckets, Duration idle) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumBuckets)
+                .expireAfterAccess(idle)
+                .build();
+    }
+
+    // 0 when a token was taken, otherwise the nanoseconds until the next one is available
+    public long tryAcquire(Object key, Limit limit) {
+        long now = System.nanoTime();
+        long interval = limit.intervalNanos();
+        long tolerance = interval * (limit.capacity() - 1);
+        AtomicLong full = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = full.get();
+            long start = Math.max(current, now);
+            if (start - now > tolerance) {
+                return start - now - tolerance;
+            }
+            if (full.compareAndSet(current, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,106 @@
+package com.todolist.security;
+
+import com.todolist.entity.User;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final boolean emailValidated;
+    private String password;
+
+    public UserPrincipal(Long id, String username, String email, boolean emailValidated, String password) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.emailValidated = emailValidated;
+        this.password = password;
+    }
+
+    public static UserPrincipal create(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getEmail(),
+                                 user.isEmailValidated(), user.getPassword());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public boolean isEmailValidated() {
+        return emailValidated;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserPrincipal that = (UserPrincipal) o;
+        return Objects.equals(id, that.id) && Objects.equals(username, that.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username);
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal{" +
+               "id=" + id +
+               ", username='" + username + '\'' +
+               ", emailValidated=" + emailValidated +
+               '}';
+    }
+}
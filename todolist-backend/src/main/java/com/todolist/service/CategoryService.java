@@ -1,14 +1,21 @@
 package com.todolist.service;
 
 import com.todolist.dto.CategoryDto;
+import com.todolist.dto.FieldSet;
 import com.todolist.entity.Category;
+import com.todolist.entity.Tombstone;
 import com.todolist.entity.User;
 import com.todolist.repository.CategoryRepository;
+import com.todolist.repository.CategoryTodoCount;
 import com.todolist.repository.TodoRepository;
+import com.todolist.repository.TombstoneRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,19 +24,53 @@ public class CategoryService {
     
     private final CategoryRepository categoryRepository;
     private final TodoRepository todoRepository;
+    private final TombstoneRepository tombstoneRepository;
     private final UserService userService;
+    private final DataVersionService dataVersionService;
+    private final ListingCache listingCache;
+    private final TodoSearchIndex todoSearchIndex;
     
-    public CategoryService(CategoryRepository categoryRepository, TodoRepository todoRepository, UserService userService) {
+    public CategoryService(CategoryRepository categoryRepository, TodoRepository todoRepository,
+                           TombstoneRepository tombstoneRepository, UserService userService,
+                           DataVersionService dataVersionService, ListingCache listingCache,
+                           TodoSearchIndex todoSearchIndex) {
         this.categoryRepository = categoryRepository;
         this.todoRepository = todoRepository;
+        this.tombstoneRepository = tombstoneRepository;
         this.userService = userService;
+        this.dataVersionService = dataVersionService;
+        this.listingCache = listingCache;
+        this.todoSearchIndex = todoSearchIndex;
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<CategoryDto> getAllCategories() {
+        return getAllCategories(FieldSet.ALL);
+    }
+    
+    // Cache hits need no transaction; on a miss the queries run in their own
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<CategoryDto> getAllCategories(FieldSet fields) {
         User currentUser = userService.getCurrentUser();
-        return categoryRepository.findByUserOrderByCreated(currentUser)
+        // The todo counts are a query of their own, skipped when none of them is requested
+        boolean counted = fields.hasAny("todoCount", "openTodoCount", "doneTodoCount");
+        return listingCache.get(currentUser.getId(), counted ? "categories" : "categories:uncounted",
+                () -> getAllCategories(currentUser, counted));
+    }
+    
+    List<CategoryDto> getAllCategories(User user) {
+        return getAllCategories(user, true);
+    }
+    
+    private List<CategoryDto> getAllCategories(User user, boolean counted) {
+        // One grouped count for all categories instead of a count per category
+        Map<Long, CategoryTodoCount> counts = new HashMap<>();
+        for (CategoryTodoCount count : counted ? todoRepository.countByUserGroupedByCategory(user) : List.<CategoryTodoCount>of()) {
+            counts.put(count.getCategoryId(), count);
+        }
+        return categoryRepository.findByUserOrderByCreated(user)
                 .stream()
-                .map(this::convertToDto)
+                .map(category -> convertToDto(category, counts.get(category.getId())))
                 .collect(Collectors.toList());
     }
     
@@ -58,7 +99,9 @@ public class CategoryService {
         category.setUser(currentUser);
         
         Category saved = categoryRepository.save(category);
-        return convertToDto(saved);
+        todoSearchIndex.markChanged(currentUser.getId());
+        dataVersionService.increment(currentUser);
+        return convertToDto(saved, null);
     }
     
     public CategoryDto updateCategory(Long id, CategoryDto categoryDto) {
@@ -74,6 +117,9 @@ public class CategoryService {
         
         category.setName(categoryDto.getName());
         Category saved = categoryRepository.save(category);
+        // Search results read the category name from the database, so the index is kept
+        todoSearchIndex.markChanged(currentUser.getId());
+        dataVersionService.increment(currentUser);
         return convertToDto(saved);
     }
     
@@ -84,16 +130,28 @@ public class CategoryService {
         
         // This will cascade delete all todos in this category
         categoryRepository.delete(category);
+        tombstoneRepository.save(new Tombstone(currentUser.getId(), Tombstone.EntityType.CATEGORY, id));
+        todoSearchIndex.changes(currentUser.getId()).removeCategory(id);
+        dataVersionService.increment(currentUser);
     }
     
-    private CategoryDto convertToDto(Category category) {
+    CategoryDto convertToDto(Category category) {
+        return convertToDto(category, todoRepository.countByCategory(category).orElse(null));
+    }
+    
+    CategoryDto convertToDto(Category category, CategoryTodoCount count) {
+        long total = count != null ? count.getTotal() : 0L;
+        long done = count != null ? count.getDone() : 0L;
+        
         CategoryDto dto = new CategoryDto();
         dto.setId(category.getId());
         dto.setName(category.getName());
         dto.setDateCreated(category.getDateCreated());
         dto.setAuditDateCreated(category.getAuditDateCreated());
         dto.setAuditDateModified(category.getAuditDateModified());
-        dto.setTodoCount(todoRepository.countByUserAndCategory(category.getUser(), category));
+        dto.setTodoCount(total);
+        dto.setOpenTodoCount(total - done);
+        dto.setDoneTodoCount(done);
         return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.todolist.service;
+
+import com.todolist.entity.User;
+import com.todolist.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Per-user data version: a counter bumped in the same transaction as every change to the user's
+ * todos or categories. Listings use it as their ETag, so an unchanged list is answered with 304
+ * after a single primary key lookup instead of the listing queries.
+ */
+@Service
+@Transactional
+public class DataVersionService {
+    
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final ListingInvalidationService listingInvalidationService;
+    
+    public DataVersionService(UserRepository userRepository, UserService userService,
+                              ListingInvalidationService listingInvalidationService) {
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.listingInvalidationService = listingInvalidationService;
+    }
+    
+    // Every write path ends here, so this is also where the user's cached listings are dropped
+    public void increment(User user) {
+        userRepository.incrementDataVersion(user.getId());
+        listingInvalidationService.invalidate(user.getId());
+    }
+    
+    // Read before the listing, so a concurrent write can only make the ETag older than the body, never newer.
+    // Weak, since the same data is sent as JSON or CBOR, narrowed or not, and compressed or not; Tomcat
+    // does not compress responses with a strong ETag
+    @Transactional(readOnly = true)
+    public String currentETag() {
+        Long userId = userService.getCurrentUserId();
+        long version = userRepository.findDataVersionById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+        return "W/\"" + userId + "-" + version + "\"";
+    }
+}
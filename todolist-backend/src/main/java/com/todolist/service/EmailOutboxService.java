@@ -0,0 +1,155 @@
+package com.todolist.service;
+
+import com.todolist.entity.OutboxEmail;
+import com.todolist.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends the emails of the outbox in batches, each batch over one SMTP connection. A batch is claimed
+ * by moving the due time of its emails to the end of a lease, so several instances never send the same
+ * email and the emails of an instance that died are picked up again once the lease ends. Failed emails
+ * are retried with exponential backoff and marked DEAD after app.mail.outbox.max-attempts.
+ * Nothing here runs in a transaction, so no database connection is held while SMTP is slow.
+ */
+@Service
+public class EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.lease:300}")
+    private long leaseSeconds;
+
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.initial-backoff:30}")
+    private long initialBackoffSeconds;
+
+    @Value("${app.mail.outbox.max-backoff:3600}")
+    private long maxBackoffSeconds;
+
+    @Value("${app.mail.outbox.retention:7}")
+    private long retentionDays;
+
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository, EmailService emailService,
+                              MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.sent = outcome(meterRegistry, "sent");
+        this.retried = outcome(meterRegistry, "retried");
+        this.dead = outcome(meterRegistry, "dead");
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("mail.outbox")
+                .tag("outcome", outcome)
+                .description("Outbox emails by the outcome of their send attempt")
+                .register(meterRegistry);
+    }
+
+    // A full batch is followed by the next one right away
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval:2000}")
+    public void sendDueEmails() {
+        try {
+            while (sendBatch() == batchSize) {
+                logger.debug("Outbox batch full, sending the next one");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error while sending outbox emails: {}", e.getMessage(), e);
+        }
+    }
+
+    private int sendBatch() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = emailOutboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) {
+            return 0;
+        }
+        String claim = UUID.randomUUID().toString();
+        emailOutboxRepository.claim(dueIds, claim, now, now.plusSeconds(leaseSeconds));
+        List<OutboxEmail> emails = emailOutboxRepository.findByClaim(claim);
+        if (emails.isEmpty()) {
+            return dueIds.size();
+        }
+
+        Map<SimpleMailMessage, OutboxEmail> byMessage = new IdentityHashMap<>();
+        List<SimpleMailMessage> messages = new ArrayList<>(emails.size());
+        for (OutboxEmail email : emails) {
+            SimpleMailMessage message = emailService.toMessage(email);
+            byMessage.put(message, email);
+            messages.add(message);
+        }
+        Map<SimpleMailMessage, Exception> failures = emailService.sendBatch(messages);
+
+        List<Long> sentIds = new ArrayList<>(emails.size());
+        for (SimpleMailMessage message : messages) {
+            OutboxEmail email = byMessage.get(message);
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                sentIds.add(email.getId());
+            } else {
+                failed(email, failure);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            emailOutboxRepository.markSent(sentIds, LocalDateTime.now());
+            sent.increment(sentIds.size());
+        }
+        logger.debug("Sent {} of {} outbox emails", sentIds.size(), emails.size());
+        return dueIds.size();
+    }
+
+    private void failed(OutboxEmail email, Exception failure) {
+        int attempts = email.getAttempts() + 1;
+        String error = failure.getMessage() == null ? failure.getClass().getName() : failure.getMessage();
+        if (error.length() > 500) {
+            error = error.substring(0, 500);
+        }
+        if (attempts >= maxAttempts) {
+            emailOutboxRepository.markFailed(email.getId(), OutboxEmail.Status.DEAD, LocalDateTime.now(), error);
+            dead.increment();
+            logger.error("Giving up on outbox email {} to {} after {} attempts: {}",
+                    email.getId(), email.getRecipient(), attempts, error);
+            return;
+        }
+        long backoffSeconds = Math.min(maxBackoffSeconds, initialBackoffSeconds << Math.min(attempts - 1, 30));
+        emailOutboxRepository.markFailed(email.getId(), OutboxEmail.Status.PENDING,
+                LocalDateTime.now().plusSeconds(backoffSeconds), error);
+        retried.increment();
+        logger.warn("Outbox email {} to {} failed, attempt {} of {}, retrying in {}s: {}",
+                email.getId(), email.getRecipient(), attempts, maxAttempts, backoffSeconds, error);
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.purge-interval:3600000}")
+    public void purgeSentEmails() {
+        int deleted = emailOutboxRepository.deleteSentBefore(LocalDateTime.now().minus(Duration.ofDays(retentionDays)));
+        logger.debug("Purged {} sent outbox emails", deleted);
+    }
+}
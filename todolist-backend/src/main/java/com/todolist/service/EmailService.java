@@ -1,14 +1,26 @@
 package com.todolist.service;
 
+import com.todolist.entity.OutboxEmail;
+import com.todolist.repository.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Service
 public class EmailService {
 
@@ -17,12 +29,53 @@ public class EmailService {
     @Autowired
     private JavaMailSender javaMailSender;
 
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
     @Value("${app.frontend.url:http://localhost:5173}")
     private String frontendUrl;
 
     @Value("${spring.mail.username}")
     private String emailSender;
 
+    // The SMTP transport holds monitors while it waits on the socket, which would pin a virtual thread
+    // to its carrier, so messages are sent from a platform thread
+    private final ExecutorService mailSender = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("mail-sender").factory());
+
+    @PreDestroy
+    void shutdown() {
+        mailSender.shutdown();
+    }
+
+    /**
+     * Sends the messages over one SMTP connection and returns the ones that failed with their cause.
+     * When the connection itself fails, every message is returned.
+     */
+    public Map<SimpleMailMessage, Exception> sendBatch(List<SimpleMailMessage> messages) throws InterruptedException {
+        Map<SimpleMailMessage, Exception> failures = new IdentityHashMap<>();
+        try {
+            mailSender.submit(() -> javaMailSender.send(messages.toArray(new SimpleMailMessage[0]))).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MailSendException sendException && !sendException.getFailedMessages().isEmpty()) {
+                sendException.getFailedMessages().forEach((message, cause) -> failures.put((SimpleMailMessage) message, cause));
+            } else {
+                Exception cause = e.getCause() instanceof Exception exception ? exception : e;
+                messages.forEach(message -> failures.put(message, cause));
+            }
+        }
+        return failures;
+    }
+
+    public SimpleMailMessage toMessage(OutboxEmail email) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(emailSender);
+        message.setTo(email.getRecipient());
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        return message;
+    }
+
     private boolean isValidEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
             return false;
@@ -32,49 +85,38 @@ public class EmailService {
         return email.matches(emailRegex);
     }
 
-    public boolean sendEmailValidation(String toEmail, String validationToken) {
-        try {
-            if (toEmail == null || toEmail.trim().isEmpty()) {
-                logger.error("Cannot send validation email: recipient email address is null or empty");
-                return false;
-            }
-
-            if (!isValidEmail(toEmail)) {
-                logger.error("Cannot send validation email: invalid email address format: {}", toEmail);
-                return false;
-            }
-
-            if (validationToken == null || validationToken.trim().isEmpty()) {
-                logger.error("Cannot send validation email: validation token is null or empty");
-                return false;
-            }
+    // Written to the outbox in the caller's transaction, so the email exists exactly if the change commits
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean queueEmailValidation(String toEmail, String validationToken) {
+        if (toEmail == null || toEmail.trim().isEmpty()) {
+            logger.error("Cannot send validation email: recipient email address is null or empty");
+            return false;
+        }
 
-            String validationLink = frontendUrl + "/validate-email?token=" + validationToken;
-
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(emailSender);
-            message.setTo(toEmail);
-            message.setSubject("TodoList - Email Validation Required");
-            message.setText("Hello!\n\n" +
-                    "Thank you for registering with TodoList Application!\n\n" +
-                    "To complete your registration, please validate your email address by clicking the link below:\n\n" +
-                    validationLink + "\n\n" +
-                    "This link will expire in 24 hours for security reasons.\n\n" +
-                    "If you did not create an account with us, please ignore this email.\n\n" +
-                    "Best regards,\n" +
-                    "TodoList Team");
-
-            javaMailSender.send(message);
-            logger.info("Email validation sent successfully to {}", toEmail);
-            return true;
-
-        } catch (MailException e) {
-            logger.error("Failed to send validation email to {}: Mail server error - {}", toEmail, e.getMessage(), e);
+        if (!isValidEmail(toEmail)) {
+            logger.error("Cannot send validation email: invalid email address format: {}", toEmail);
             return false;
-        } catch (Exception e) {
-            logger.error("Failed to send validation email to {}: Unexpected error - {}", toEmail, e.getMessage(), e);
+        }
+
+        if (validationToken == null || validationToken.trim().isEmpty()) {
+            logger.error("Cannot send validation email: validation token is null or empty");
             return false;
         }
+
+        String validationLink = frontendUrl + "/validate-email?token=" + validationToken;
+
+        emailOutboxRepository.save(new OutboxEmail(toEmail,
+                "TodoList - Email Validation Required",
+                "Hello!\n\n" +
+                "Thank you for registering with TodoList Application!\n\n" +
+                "To complete your registration, please validate your email address by clicking the link below:\n\n" +
+                validationLink + "\n\n" +
+                "This link will expire in 24 hours for security reasons.\n\n" +
+                "If you did not create an account with us, please ignore this email.\n\n" +
+                "Best regards,\n" +
+                "TodoList Team"));
+        logger.info("Email validation queued for {}", toEmail);
+        return true;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.todolist.service;
+
+import com.todolist.repository.JobLeaseRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Leases in job_leases that let a scheduled job run on one backend instance at a time when several
+ * share the database. A lease ends on its own, so the job is taken over when its instance dies;
+ * a long job extends its lease as it goes and stops when it finds it lost.
+ */
+@Service
+public class JobLeaseService {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final String owner = UUID.randomUUID().toString();
+
+    public JobLeaseService(JobLeaseRepository jobLeaseRepository) {
+        this.jobLeaseRepository = jobLeaseRepository;
+    }
+
+    // True when this instance holds the lease for the given duration from now, also when it held it already
+    public boolean tryAcquire(String job, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobLeaseRepository.acquire(job, owner, now, now.plus(duration)) == 1) {
+            return true;
+        }
+        if (jobLeaseRepository.existsById(job)) {
+            return false;
+        }
+        try {
+            return jobLeaseRepository.create(job, owner, now.plus(duration)) == 1;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    public void release(String job) {
+        jobLeaseRepository.release(job, owner, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,80 @@
+package com.todolist.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Full todo and category listings of recently active users, bounded by the number of cached rows.
+ * Entries are keyed by a per-user generation: invalidating a user bumps it, which makes all of
+ * their listings unreachable at once, and a listing read while the generation moved is not stored.
+ * Hits, misses and evictions are published as the "listings" cache.* meters.
+ */
+@Component
+public class ListingCache {
+    
+    record Key(Long userId, long generation, String listing) {
+    }
+    
+    private final boolean enabled;
+    private final Cache<Key, List<?>> listings;
+    // Kept at least as long as the listings read under them, so a generation never restarts while they live
+    private final Cache<Long, AtomicLong> generations;
+    private final Counter invalidations;
+    
+    public ListingCache(@Value("${app.listing-cache.enabled:true}") boolean enabled,
+                        @Value("${app.listing-cache.maximum-rows:200000}") long maximumRows,
+                        @Value("${app.listing-cache.expiration:300}") long expirationSeconds,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.listings = Caffeine.newBuilder()
+                .maximumWeight(maximumRows)
+                .weigher((Key key, List<?> rows) -> rows.size() + 1)
+                .expireAfterWrite(Duration.ofSeconds(expirationSeconds))
+                .recordStats()
+                .build();
+        this.generations = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(expirationSeconds))
+                .build();
+        this.invalidations = Counter.builder("cache.invalidations")
+                .tag("cache", "listings")
+                .description("Users whose cached listings were dropped because their data changed")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, "listings");
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(Long userId, String listing, Supplier<List<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        AtomicLong generation = generations.get(userId, id -> new AtomicLong());
+        Key key = new Key(userId, generation.get(), listing);
+        List<T> cached = (List<T>) listings.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<T> loaded = loader.get();
+        if (generation.get() == key.generation()) {
+            listings.put(key, loaded);
+        }
+        return loaded;
+    }
+    
+    public void invalidate(Long userId) {
+        AtomicLong generation = generations.getIfPresent(userId);
+        if (generation != null) {
+            generation.incrementAndGet();
+        }
+        invalidations.increment();
+    }
+}
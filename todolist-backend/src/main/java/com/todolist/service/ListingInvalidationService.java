@@ -0,0 +1,110 @@
+package com.todolist.service;
+
+import com.todolist.entity.ListingInvalidation;
+import com.todolist.repository.ListingInvalidationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drops a user's cached listings once a change to their data commits and publishes a
+ * {@link UserDataChangedEvent}. With several backend instances (app.cluster.enabled) the change also
+ * records a row in listing_invalidations, which every other instance polls and handles the same way.
+ * Rows are read back a lookback window behind the newest one seen, so rows from transactions that
+ * committed late, or from instances whose clock is slightly behind, are not missed.
+ */
+@Service
+@Transactional
+public class ListingInvalidationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ListingInvalidationService.class);
+    
+    private final ListingCache listingCache;
+    private final ListingInvalidationRepository listingInvalidationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    // Rows written by this instance were handled at commit and are skipped by the poll
+    private final String origin = UUID.randomUUID().toString();
+    
+    @Value("${app.cluster.enabled:false}")
+    private boolean clusterEnabled;
+    
+    @Value("${app.cluster.lookback:10}")
+    private long lookbackSeconds;
+    
+    @Value("${app.cluster.retention:3600}")
+    private long retentionSeconds;
+    
+    // Only touched by the scheduled poll
+    private LocalDateTime newestSeen = LocalDateTime.now();
+    private final Map<Long, LocalDateTime> seenIds = new HashMap<>();
+    
+    public ListingInvalidationService(ListingCache listingCache, ListingInvalidationRepository listingInvalidationRepository,
+                                      ApplicationEventPublisher eventPublisher) {
+        this.listingCache = listingCache;
+        this.listingInvalidationRepository = listingInvalidationRepository;
+        this.eventPublisher = eventPublisher;
+    }
+    
+    public void invalidate(Long userId) {
+        if (clusterEnabled) {
+            listingInvalidationRepository.save(new ListingInvalidation(userId, origin));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changed(userId);
+            return;
+        }
+        // Invalidating before the commit would let a concurrent read cache the old rows again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changed(userId);
+            }
+        });
+    }
+    
+    private void changed(Long userId) {
+        listingCache.invalidate(userId);
+        eventPublisher.publishEvent(new UserDataChangedEvent(userId));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.cluster.poll-interval:1000}")
+    @Transactional(readOnly = true)
+    public void pollInvalidations() {
+        if (!clusterEnabled) {
+            return;
+        }
+        LocalDateTime since = newestSeen.minus(Duration.ofSeconds(lookbackSeconds));
+        seenIds.values().removeIf(createdAt -> createdAt.isBefore(since));
+        for (ListingInvalidation invalidation : listingInvalidationRepository.findCreatedAfter(since)) {
+            if (seenIds.put(invalidation.getId(), invalidation.getCreatedAt()) == null
+                    && !origin.equals(invalidation.getOrigin())) {
+                changed(invalidation.getUserId());
+            }
+            if (invalidation.getCreatedAt().isAfter(newestSeen)) {
+                newestSeen = invalidation.getCreatedAt();
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.cluster.purge-interval:600000}")
+    public void purgeInvalidations() {
+        if (!clusterEnabled) {
+            return;
+        }
+        int deleted = listingInvalidationRepository.deleteCreatedBefore(
+                LocalDateTime.now().minus(Duration.ofSeconds(retentionSeconds)));
+        logger.debug("Purged {} listing invalidations", deleted);
+    }
+}
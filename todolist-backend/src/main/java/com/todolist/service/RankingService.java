@@ -0,0 +1,373 @@
+package com.todolist.service;
+
+import com.todolist.entity.Todo;
+import com.todolist.repository.TodoRankKey;
+import com.todolist.repository.TodoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders todos within their category and done state ("rank group") by a sparse rank key.
+ * Placing or moving a todo only writes that todo's key, picked between its new neighbours;
+ * the dense 1..n ranking shown to clients is derived from the key order when reading.
+ * Groups whose keys get too close are renumbered in the background.
+ */
+@Service
+@Transactional
+public class RankingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RankingService.class);
+
+    // Distance between neighbouring keys after a rebalance, and when appending or prepending
+    static final long GAP = 1L << 20;
+
+    // Groups where neighbouring keys end up closer than this are queued for rebalancing
+    private static final long MIN_GAP = 1L << 8;
+
+    static final Comparator<Todo> RANK_ORDER = Comparator.comparing(Todo::getRankKey).thenComparing(Todo::getId);
+
+    record RankGroup(Long categoryId, Boolean done) {
+        static RankGroup of(Todo todo) {
+            return new RankGroup(todo.getCategory().getId(), todo.getDone());
+        }
+    }
+
+    private final TodoRepository todoRepository;
+    private final TransactionTemplate transaction;
+    private final Set<RankGroup> pendingRebalance = ConcurrentHashMap.newKeySet();
+
+    public RankingService(TodoRepository todoRepository, PlatformTransactionManager transactionManager) {
+        this.todoRepository = todoRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Dense 1-based position of a saved todo within its rank group.
+     */
+    public int positionOf(Todo todo) {
+        return todoRepository.countRankedBefore(todo.getCategory(), todo.getDone(), todo.getRankKey(), todo.getId()).intValue() + 1;
+    }
+
+    /**
+     * Sets the rank key of the todo so that it sits at the given position of its rank group,
+     * shifting the todos from that position on down by one without touching them.
+     * A null position or one past the end appends the todo to the group.
+     */
+    public void placeAt(Todo todo, Integer position) {
+        placeAt(todo, todo.getDone(), position);
+    }
+
+    /**
+     * As {@link #placeAt(Todo, Integer)}, in the group of the given done state. Placing a todo whose done
+     * state is about to change before changing it keeps the query from flushing it, so it is written once.
+     */
+    public void placeAt(Todo todo, Boolean done, Integer position) {
+        if (!tryPlaceAt(todo, done, position)) {
+            rebalance(todo.getCategory().getId(), done);
+            tryPlaceAt(todo, done, position);
+        }
+    }
+
+    private boolean tryPlaceAt(Todo todo, Boolean done, Integer position) {
+        Long categoryId = todo.getCategory().getId();
+        Long before;
+        Long after = null;
+        // One row more than needed in case the todo itself is among them, so that it is locked in rank order too
+        if (position == null) {
+            List<Long> keys = keysOfOthers(todoRepository.lockLastRankKeys(categoryId, done, PageRequest.of(0, 2)), todo);
+            before = keys.isEmpty() ? null : keys.get(0);
+        } else {
+            int target = Math.max(position, 1);
+            List<Long> keys = keysOfOthers(todoRepository.lockRankKeys(categoryId, done, PageRequest.of(0, target + 1)), todo);
+            if (keys.size() < target) {
+                before = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+            } else {
+                before = target > 1 ? keys.get(target - 2) : null;
+                after = keys.get(target - 1);
+            }
+        }
+
+        List<Long> newKeys = keysBetween(before, after, 1, new RankGroup(todo.getCategory().getId(), done));
+        if (newKeys == null) {
+            return false;
+        }
+        todo.setRankKey(newKeys.get(0));
+        return true;
+    }
+
+    /**
+     * Applies a new order to todos of rank groups, each list holding todos of a single group in their desired order.
+     * The todos that already are in order relative to each other (the longest increasing run of keys)
+     * keep their keys; only the others get new keys between their new neighbours, so dragging one card
+     * rewrites one row.
+     */
+    public void reorder(Collection<List<Todo>> desiredOrders) {
+        Set<Long> categoryIds = new HashSet<>();
+        for (List<Todo> desiredOrder : desiredOrders) {
+            desiredOrder.forEach(todo -> categoryIds.add(todo.getCategory().getId()));
+        }
+        if (categoryIds.isEmpty()) {
+            return;
+        }
+        // The todos may have been read before a rebalance of their group committed
+        Map<Long, Long> currentKeys = new HashMap<>();
+        for (TodoRankKey row : todoRepository.lockCategoryRankKeys(categoryIds)) {
+            currentKeys.put(row.id(), row.rankKey());
+        }
+        for (List<Todo> desiredOrder : desiredOrders) {
+            for (Todo todo : desiredOrder) {
+                todo.setRankKey(currentKeys.getOrDefault(todo.getId(), todo.getRankKey()));
+            }
+            if (!tryReorder(desiredOrder)) {
+                Todo first = desiredOrder.get(0);
+                rebalance(first.getCategory().getId(), first.getDone());
+                tryReorder(desiredOrder);
+            }
+        }
+    }
+
+    private boolean tryReorder(List<Todo> desiredOrder) {
+        boolean[] inPlace = longestIncreasingRun(desiredOrder);
+        RankGroup group = RankGroup.of(desiredOrder.get(0));
+
+        int i = 0;
+        while (i < desiredOrder.size()) {
+            if (inPlace[i]) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < desiredOrder.size() && !inPlace[i]) {
+                i++;
+            }
+            Long before = start > 0 ? desiredOrder.get(start - 1).getRankKey() : null;
+            Long after = i < desiredOrder.size() ? desiredOrder.get(i).getRankKey() : null;
+            List<Long> keys = keysBetween(before, after, i - start, group);
+            if (keys == null) {
+                return false;
+            }
+            for (int j = start; j < i; j++) {
+                desiredOrder.get(j).setRankKey(keys.get(j - start));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renumbers the keys of a rank group to evenly spaced values, keeping the current order. The group is
+     * read under lock, so the rows written back are the latest ones and edits wait for the renumbering
+     * to commit instead of being overwritten by it.
+     */
+    public void rebalance(Long categoryId, Boolean done) {
+        List<Todo> todos = todoRepository.findRankGroup(categoryId, done);
+        long key = GAP;
+        for (Todo todo : todos) {
+            todo.setRankKey(key);
+            key += GAP;
+        }
+        pendingRebalance.remove(new RankGroup(categoryId, done));
+        logger.debug("Rebalanced {} todos of category {} (done={})", todos.size(), categoryId, done);
+    }
+
+    /**
+     * Starts placing the todos of a batch of changes in memory. See {@link Placement}.
+     */
+    public Placement newPlacement() {
+        return new Placement();
+    }
+
+    /**
+     * Keeps the rank groups touched by a batch of changes in memory, each read once, so that the
+     * changes need no queries in between and can be flushed as JDBC batches at the end.
+     * Callers must report every todo leaving its group (moving, toggling or being deleted) with
+     * {@link #leave} before changing it, and every todo entering a group with {@link #join} or {@link #placeAt}.
+     */
+    public class Placement {
+
+        private final Map<RankGroup, List<Todo>> groups = new HashMap<>();
+        private final Set<Todo> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        public int positionOf(Todo todo) {
+            List<Todo> group = group(RankGroup.of(todo));
+            for (int i = 0; i < group.size(); i++) {
+                if (group.get(i) == todo) {
+                    return i + 1;
+                }
+            }
+            throw new IllegalStateException("Todo " + todo.getId() + " is not in its rank group");
+        }
+
+        // Reads the groups of the given categories with one query, for batches that touch many of them
+        public void load(Collection<Long> categoryIds) {
+            Set<Long> missing = new HashSet<>();
+            for (Long categoryId : categoryIds) {
+                for (boolean done : new boolean[]{false, true}) {
+                    if (groups.putIfAbsent(new RankGroup(categoryId, done), new ArrayList<>()) == null) {
+                        missing.add(categoryId);
+                    }
+                }
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            for (Todo todo : todoRepository.findRankGroups(missing)) {
+                groups.get(RankGroup.of(todo)).add(todo);
+            }
+            for (Long categoryId : missing) {
+                groups.get(new RankGroup(categoryId, false)).sort(RANK_ORDER);
+                groups.get(new RankGroup(categoryId, true)).sort(RANK_ORDER);
+            }
+        }
+
+        public void leave(Todo todo) {
+            group(RankGroup.of(todo)).removeIf(member -> member == todo);
+        }
+
+        public void remove(Todo todo) {
+            leave(todo);
+            removed.add(todo);
+        }
+
+        // Enters the todo into its group keeping its current key
+        public void join(Todo todo) {
+            List<Todo> group = group(RankGroup.of(todo));
+            int index = Collections.binarySearch(group, todo, RANK_ORDER);
+            group.add(index < 0 ? -index - 1 : index, todo);
+        }
+
+        // Same semantics as RankingService.placeAt, on the in-memory group
+        public void placeAt(Todo todo, Integer position) {
+            RankGroup key = RankGroup.of(todo);
+            List<Todo> group = group(key);
+            int index = position == null ? group.size() : Math.min(Math.max(position, 1) - 1, group.size());
+            Long before = index > 0 ? group.get(index - 1).getRankKey() : null;
+            Long after = index < group.size() ? group.get(index).getRankKey() : null;
+            List<Long> newKeys = keysBetween(before, after, 1, key);
+            if (newKeys == null) {
+                long rankKey = GAP;
+                for (Todo member : group) {
+                    member.setRankKey(rankKey);
+                    rankKey += GAP;
+                }
+                pendingRebalance.remove(key);
+                newKeys = keysBetween(index > 0 ? group.get(index - 1).getRankKey() : null,
+                        index < group.size() ? group.get(index).getRankKey() : null, 1, key);
+            }
+            todo.setRankKey(newKeys.get(0));
+            group.add(index, todo);
+        }
+
+        // Rows already moved, toggled or deleted in this batch are still in their old group in the database
+        private List<Todo> group(RankGroup key) {
+            return groups.computeIfAbsent(key, k -> {
+                List<Todo> members = new ArrayList<>();
+                for (Todo todo : todoRepository.findRankGroup(k.categoryId(), k.done())) {
+                    if (RankGroup.of(todo).equals(k) && !removed.contains(todo)) {
+                        members.add(todo);
+                    }
+                }
+                members.sort(RANK_ORDER);
+                return members;
+            });
+        }
+    }
+
+    // One transaction per group, so each group is locked only while it is renumbered
+    @Scheduled(fixedDelayString = "${app.ranking.rebalance-interval:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rebalancePendingGroups() {
+        for (RankGroup group : List.copyOf(pendingRebalance)) {
+            transaction.executeWithoutResult(status -> rebalance(group.categoryId(), group.done()));
+        }
+    }
+
+    private static List<Long> keysOfOthers(List<TodoRankKey> rows, Todo todo) {
+        List<Long> keys = new ArrayList<>(rows.size());
+        for (TodoRankKey row : rows) {
+            if (!row.id().equals(todo.getId())) {
+                keys.add(row.rankKey());
+            }
+        }
+        return keys;
+    }
+
+    // count keys strictly between before and after (either may be open), or null if they do not fit
+    private List<Long> keysBetween(Long before, Long after, int count, RankGroup group) {
+        List<Long> keys = new ArrayList<>(count);
+        if (before == null && after == null) {
+            for (int j = 0; j < count; j++) {
+                keys.add(GAP * (j + 1));
+            }
+        } else if (before == null) {
+            for (int j = 0; j < count; j++) {
+                keys.add(after - GAP * (count - j));
+            }
+        } else if (after == null) {
+            for (int j = 0; j < count; j++) {
+                keys.add(before + GAP * (j + 1));
+            }
+        } else {
+            long step = (after - before) / (count + 1);
+            if (step < 1) {
+                return null;
+            }
+            if (step < MIN_GAP) {
+                pendingRebalance.add(group);
+            }
+            for (int j = 0; j < count; j++) {
+                keys.add(before + step * (j + 1));
+            }
+        }
+        return keys;
+    }
+
+    // Marks the elements forming a longest strictly increasing subsequence by current rank order (O(n log n))
+    private boolean[] longestIncreasingRun(List<Todo> todos) {
+        int n = todos.size();
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (RANK_ORDER.compare(todos.get(tails[mid]), todos.get(i)) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] inRun = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            inRun[i] = true;
+        }
+        return inRun;
+    }
+}
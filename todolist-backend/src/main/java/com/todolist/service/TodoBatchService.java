@@ -0,0 +1,249 @@
+package com.todolist.service;
+
+import com.todolist.dto.TodoBatchOperationDto;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Category;
+import com.todolist.entity.Todo;
+import com.todolist.entity.Tombstone;
+import com.todolist.entity.User;
+import com.todolist.repository.CategoryRepository;
+import com.todolist.repository.TodoRepository;
+import com.todolist.repository.TombstoneRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a list of todo operations in one transaction, all or nothing.
+ * Categories and the todos addressed by id are read up front and rankings are placed in memory,
+ * so no statement is sent while the operations are applied; all inserts, updates and deletes are
+ * flushed together as JDBC batches before the result is read back with one listing query.
+ */
+@Service
+@Transactional
+public class TodoBatchService {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${app.todos.batch.max-size:500}")
+    private int maxBatchSize;
+    
+    private final TodoRepository todoRepository;
+    private final CategoryRepository categoryRepository;
+    private final TombstoneRepository tombstoneRepository;
+    private final UserService userService;
+    private final RankingService rankingService;
+    private final DataVersionService dataVersionService;
+    private final TodoSearchIndex todoSearchIndex;
+    private final Validator validator;
+    
+    public TodoBatchService(TodoRepository todoRepository, CategoryRepository categoryRepository,
+                            TombstoneRepository tombstoneRepository, UserService userService, RankingService rankingService,
+                            DataVersionService dataVersionService, TodoSearchIndex todoSearchIndex, Validator validator) {
+        this.todoRepository = todoRepository;
+        this.categoryRepository = categoryRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.userService = userService;
+        this.rankingService = rankingService;
+        this.dataVersionService = dataVersionService;
+        this.todoSearchIndex = todoSearchIndex;
+        this.validator = validator;
+    }
+    
+    public List<TodoBatchOperationDto> applyBatch(List<TodoBatchOperationDto> operations) {
+        if (operations.size() > maxBatchSize) {
+            throw new RuntimeException("A batch may contain at most " + maxBatchSize + " operations");
+        }
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            validate(i, operations.get(i));
+            if (operations.get(i).getId() != null) {
+                ids.add(operations.get(i).getId());
+            }
+        }
+        
+        User currentUser = userService.getCurrentUser();
+        Map<String, Category> categoriesByName = new HashMap<>();
+        for (Category category : categoryRepository.findByUserOrderByNameAsc(currentUser)) {
+            categoriesByName.put(category.getName(), category);
+        }
+        Map<Long, Todo> todosById = new HashMap<>();
+        for (Todo todo : todoRepository.findByUserAndIdIn(currentUser, ids)) {
+            todosById.put(todo.getId(), todo);
+        }
+        
+        // Rank group reads must not flush the changes made so far
+        entityManager.setFlushMode(FlushModeType.COMMIT);
+        RankingService.Placement placement = rankingService.newPlacement();
+        placement.load(touchedCategoryIds(operations, todosById, categoriesByName));
+        TodoSearchIndex.Changes searchChanges = todoSearchIndex.changes(currentUser.getId());
+        List<Todo> results = new ArrayList<>(operations.size());
+        Set<Long> categoryIds = new HashSet<>();
+        for (TodoBatchOperationDto operation : operations) {
+            Todo todo = switch (operation.getOp()) {
+                case CREATE -> create(operation.getTodo(), currentUser, categoriesByName, placement);
+                case UPDATE -> update(find(todosById, operation.getId()), operation.getTodo(), categoriesByName, placement);
+                case TOGGLE -> toggle(find(todosById, operation.getId()), placement);
+                case DELETE -> delete(find(todosById, operation.getId()), placement);
+            };
+            results.add(todo);
+            if (todo != null) {
+                categoryIds.add(todo.getCategory().getId());
+            }
+            if (operation.getOp() == TodoBatchOperationDto.Operation.DELETE) {
+                searchChanges.remove(operation.getId());
+            } else if (operation.getOp() != TodoBatchOperationDto.Operation.TOGGLE) {
+                searchChanges.put(todo);
+            }
+        }
+        
+        // The listing query flushes every change first, as ordered JDBC batches
+        entityManager.setFlushMode(FlushModeType.AUTO);
+        Map<Long, TodoDto> dtosById = new HashMap<>();
+        if (!categoryIds.isEmpty()) {
+            List<TodoDto> listing = todoRepository.findListingByUserAndCategoryIds(currentUser, categoryIds);
+            TodoService.withRankings(listing);
+            for (TodoDto dto : listing) {
+                dtosById.put(dto.getId(), dto);
+            }
+        } else {
+            entityManager.flush();
+        }
+        dataVersionService.increment(currentUser);
+        
+        List<TodoBatchOperationDto> response = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            TodoBatchOperationDto operation = operations.get(i);
+            Todo todo = results.get(i);
+            Long id = todo != null ? todo.getId() : operation.getId();
+            response.add(new TodoBatchOperationDto(operation.getOp(), id, todo != null ? dtosById.get(id) : null));
+        }
+        return response;
+    }
+    
+    private Todo create(TodoDto todoDto, User currentUser, Map<String, Category> categoriesByName,
+                        RankingService.Placement placement) {
+        Todo todo = new Todo();
+        todo.setTitle(todoDto.getTitle());
+        todo.setDescription(todoDto.getDescription());
+        todo.setDone(todoDto.getDone() != null ? todoDto.getDone() : false);
+        todo.setCategory(category(categoriesByName, todoDto.getCategoryName()));
+        todo.setUser(currentUser);
+        
+        placement.placeAt(todo, todoDto.getRanking());
+        // Persisting only assigns an id from the pooled generator; the insert waits for the flush
+        todoRepository.save(todo);
+        return todo;
+    }
+    
+    // Same rules as TodoService.updateTodo
+    private Todo update(Todo todo, TodoDto todoDto, Map<String, Category> categoriesByName,
+                        RankingService.Placement placement) {
+        Category newCategory = null;
+        if (todoDto.getCategoryName() != null && !todoDto.getCategoryName().equals(todo.getCategory().getName())) {
+            newCategory = category(categoriesByName, todoDto.getCategoryName());
+        }
+        boolean doneChanged = todoDto.getDone() != null && !todoDto.getDone().equals(todo.getDone());
+        boolean rankingChanged = newCategory == null && !doneChanged && todoDto.getRanking() != null
+                && todoDto.getRanking() != placement.positionOf(todo);
+        
+        placement.leave(todo);
+        if (newCategory != null) {
+            todo.setCategory(newCategory);
+        }
+        if (todoDto.getTitle() != null) {
+            todo.setTitle(todoDto.getTitle());
+        }
+        if (todoDto.getDescription() != null) {
+            todo.setDescription(todoDto.getDescription());
+        }
+        if (todoDto.getDone() != null) {
+            todo.setDone(todoDto.getDone());
+        }
+        
+        if (newCategory != null || rankingChanged) {
+            placement.placeAt(todo, todoDto.getRanking());
+        } else if (doneChanged) {
+            placement.placeAt(todo, null);
+        } else {
+            placement.join(todo);
+        }
+        return todo;
+    }
+    
+    private Todo toggle(Todo todo, RankingService.Placement placement) {
+        placement.leave(todo);
+        todo.setDone(!todo.getDone());
+        placement.placeAt(todo, null);
+        return todo;
+    }
+    
+    private Todo delete(Todo todo, RankingService.Placement placement) {
+        placement.remove(todo);
+        todoRepository.delete(todo);
+        tombstoneRepository.save(new Tombstone(todo.getUser().getId(), Tombstone.EntityType.TODO, todo.getId()));
+        return null;
+    }
+    
+    // Categories whose rank groups the operations read, before any of them is applied
+    private static Set<Long> touchedCategoryIds(List<TodoBatchOperationDto> operations, Map<Long, Todo> todosById,
+                                                Map<String, Category> categoriesByName) {
+        Set<Long> categoryIds = new HashSet<>();
+        for (Todo todo : todosById.values()) {
+            categoryIds.add(todo.getCategory().getId());
+        }
+        for (TodoBatchOperationDto operation : operations) {
+            if (operation.getTodo() != null && categoriesByName.containsKey(operation.getTodo().getCategoryName())) {
+                categoryIds.add(categoriesByName.get(operation.getTodo().getCategoryName()).getId());
+            }
+        }
+        return categoryIds;
+    }
+    
+    private Todo find(Map<Long, Todo> todosById, Long id) {
+        Todo todo = todosById.get(id);
+        if (todo == null || !entityManager.contains(todo)) {
+            throw new RuntimeException("Todo not found with id: " + id);
+        }
+        return todo;
+    }
+    
+    private Category category(Map<String, Category> categoriesByName, String name) {
+        Category category = categoriesByName.get(name);
+        if (category == null) {
+            throw new RuntimeException("Category not found: " + name);
+        }
+        return category;
+    }
+    
+    private void validate(int index, TodoBatchOperationDto operation) {
+        if (operation == null || operation.getOp() == null) {
+            throw new RuntimeException("Operation " + index + ": Operation is required");
+        }
+        if (operation.getOp() != TodoBatchOperationDto.Operation.CREATE && operation.getId() == null) {
+            throw new RuntimeException("Operation " + index + ": Id is required");
+        }
+        if (operation.getOp() == TodoBatchOperationDto.Operation.CREATE || operation.getOp() == TodoBatchOperationDto.Operation.UPDATE) {
+            if (operation.getTodo() == null) {
+                throw new RuntimeException("Operation " + index + ": Todo is required");
+            }
+            Set<ConstraintViolation<TodoDto>> violations = validator.validate(operation.getTodo());
+            if (!violations.isEmpty()) {
+                throw new RuntimeException("Operation " + index + ": " + violations.iterator().next().getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.todolist.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last todo of a listing page: the keys the listing is ordered by
+ * (category, done, rank key, id) plus the ranking of that todo, so the next page
+ * continues the ranking without counting the todos before it. The category is found again
+ * by its id; its name only places the cursor when the category was deleted meanwhile.
+ * The rank key is read again from the todo, as rebalancing rewrites the keys of a group: the key in
+ * the cursor only places it once the todo has left its group, and if the group was also rebalanced
+ * since, that page may skip or repeat todos of the group. Clients get it as an opaque URL-safe token.
+ */
+record TodoCursor(long categoryId, String categoryName, boolean done, long rankKey, long id, int ranking) {
+
+    String encode() {
+        String value = (done ? "1" : "0") + "|" + rankKey + "|" + id + "|" + ranking + "|" + categoryId + "|" + categoryName;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TodoCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 6);
+            return new TodoCursor(Long.parseLong(parts[4]), parts[5], parts[0].equals("1"), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new RuntimeException("Invalid cursor: " + token);
+        }
+    }
+}
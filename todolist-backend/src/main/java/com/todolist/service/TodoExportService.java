@@ -0,0 +1,109 @@
+package com.todolist.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todolist.dto.CategoryDto;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.User;
+import com.todolist.repository.TodoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Writes all categories and todos of a user as NDJSON, one {"type": ..., "data": ...} object per line.
+ * Todos are read through a database cursor and written as they arrive, so memory use does not grow
+ * with the size of the account. An export holds its connection for as long as the client reads, so
+ * app.export.max-concurrent bounds exports, and an export beyond it gets 503.
+ */
+@Service
+public class TodoExportService {
+    
+    private final CategoryService categoryService;
+    private final TodoRepository todoRepository;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore exports;
+    
+    public TodoExportService(CategoryService categoryService, TodoRepository todoRepository, UserService userService,
+                             ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                             @Value("${app.export.max-concurrent:1}") int maxConcurrent) {
+        this.categoryService = categoryService;
+        this.todoRepository = todoRepository;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.exports = new Semaphore(maxConcurrent);
+    }
+    
+    // The user and the permit are taken on the request thread, so a busy export is answered with 503
+    // before the response is committed; the body runs later on an async thread and returns the permit
+    public StreamingResponseBody exportCurrentUser() {
+        User user = userService.getCurrentUser();
+        if (!exports.tryAcquire()) {
+            throw new ExportsBusyException();
+        }
+        return outputStream -> {
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> export(user, outputStream));
+            } finally {
+                exports.release();
+            }
+        };
+    }
+    
+    private void export(User user, OutputStream outputStream) {
+        try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (CategoryDto category : categoryService.getAllCategories(user)) {
+                writeLine(generator, "category", category);
+            }
+            
+            try (Stream<TodoDto> todos = todoRepository.streamListingByUser(user)) {
+                Long categoryId = null;
+                Boolean done = null;
+                int ranking = 0;
+                for (TodoDto todo : (Iterable<TodoDto>) todos::iterator) {
+                    if (!todo.getCategoryId().equals(categoryId) || !todo.getDone().equals(done)) {
+                        categoryId = todo.getCategoryId();
+                        done = todo.getDone();
+                        ranking = 0;
+                    }
+                    todo.setRanking(++ranking);
+                    writeLine(generator, "todo", todo);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Export of user " + user.getId() + " failed", e);
+        }
+    }
+    
+    private void writeLine(JsonGenerator generator, String type, Object data) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+        generator.writeObjectField("data", data);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+    
+    /**
+     * Thrown when app.export.max-concurrent exports are running; the client should retry later.
+     */
+    public static class ExportsBusyException extends RuntimeException {
+        
+        public ExportsBusyException() {
+            super("Too many exports at the moment, please retry shortly");
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.todolist.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.todolist.entity.Todo;
+import com.todolist.repository.TodoText;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory inverted index over the titles and descriptions of a user's todos, built from the
+ * database on the user's first search and bounded by the number of indexed todos. Writes of
+ * TodoService, TodoBatchService and CategoryService hand their changes to {@link #changes}, which
+ * applies them once the transaction commits, or call {@link #markChanged} when no text changed. Any
+ * other change of the user's data, such as one of another instance, arrives as a
+ * {@link UserDataChangedEvent} only and drops the index, as does a write that would leave more removed
+ * than live todos in it; the next search builds it again. UserCleanupService drops the index of
+ * each user it deletes through {@link #evict}; other instances keep theirs until it expires. Builds and hits are published as the "todo-search"
+ * cache.* meters.
+ */
+@Component
+public class TodoSearchIndex {
+
+    public record Hit(Long todoId, double score) {
+    }
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int MIN_REMOVED_BEFORE_REBUILD = 1024;
+
+    private final Cache<Long, UserIndex> indexes;
+    // As in ListingCache: an index read from the database while the user's data changed is not stored
+    private final Cache<Long, AtomicLong> generations;
+    // Users whose index the transaction committing on this thread has brought up to date already
+    private final ThreadLocal<Set<Long>> applied = new ThreadLocal<>();
+
+    public TodoSearchIndex(@Value("${app.search.maximum-todos:500000}") long maximumTodos,
+                           @Value("${app.search.expiration:1800}") long expirationSeconds,
+                           MeterRegistry meterRegistry) {
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maximumTodos)
+                .weigher((Long userId, UserIndex index) -> index.documents() + 1)
+                .expireAfterAccess(Duration.ofSeconds(expirationSeconds))
+                .recordStats()
+                .build();
+        this.generations = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(expirationSeconds))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "todo-search");
+    }
+
+    // The best matches of every word of the query, the last one also as a prefix of longer words
+    public List<Hit> search(Long userId, String query, int limit, Supplier<List<TodoText>> loader) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokens(query)));
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        return index(userId, loader).search(words, limit);
+    }
+
+    private UserIndex index(Long userId, Supplier<List<TodoText>> loader) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            return index;
+        }
+        AtomicLong generation = generations.get(userId, id -> new AtomicLong());
+        long before = generation.get();
+        UserIndex loaded = new UserIndex();
+        for (TodoText todo : loader.get()) {
+            loaded.put(todo.id(), todo.categoryId(), todo.title(), todo.description());
+        }
+        if (generation.get() == before) {
+            UserIndex raced = indexes.asMap().putIfAbsent(userId, loaded);
+            return raced != null ? raced : loaded;
+        }
+        return loaded;
+    }
+
+    // The changes to the user's todos in the current transaction; without one they are left to the event
+    public Changes changes(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Changes();
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, Changes> pending = (Map<Long, Changes>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            Map<Long, Changes> committing = pending;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // Ahead of ListingInvalidationService, whose event then finds the index up to date
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+
+                @Override
+                public void afterCommit() {
+                    committing.forEach(TodoSearchIndex.this::apply);
+                    applied.set(committing.keySet());
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TodoSearchIndex.this);
+                    applied.remove();
+                }
+            });
+        }
+        return pending.computeIfAbsent(userId, id -> new Changes());
+    }
+
+    // For writes that change none of the indexed text, so the event of their commit keeps the index
+    public void markChanged(Long userId) {
+        changes(userId);
+    }
+
+    private void apply(Long userId, Changes changes) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index == null) {
+            return;
+        }
+        index.apply(changes);
+        // Replaced with itself to weigh it again; neither brings back an index dropped meanwhile
+        if (index.removed() > Math.max(MIN_REMOVED_BEFORE_REBUILD, index.documents())) {
+            indexes.asMap().remove(userId, index);
+        } else {
+            indexes.asMap().replace(userId, index, index);
+        }
+    }
+
+    @EventListener
+    public void onUserDataChanged(UserDataChangedEvent event) {
+        AtomicLong generation = generations.getIfPresent(event.userId());
+        if (generation != null) {
+            generation.incrementAndGet();
+        }
+        Set<Long> upToDate = applied.get();
+        if (upToDate == null || !upToDate.contains(event.userId())) {
+            indexes.invalidate(event.userId());
+        }
+    }
+
+    // For a deleted user, whose index would otherwise hold its todos until it expires
+    public void evict(Long userId) {
+        indexes.invalidate(userId);
+        generations.invalidate(userId);
+    }
+
+    // Lower case words without diacritics, split at anything but letters and digits
+    static List<String> tokens(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        // Decomposed only when needed, which leaves ASCII text a single pass
+        String decomposed = Normalizer.isNormalized(text, Normalizer.Form.NFD) ? text
+                : Normalizer.normalize(text, Normalizer.Form.NFD);
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); ) {
+            int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                token.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (!isMark(codePoint) && !token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (!token.isEmpty()) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    private static boolean isMark(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * Todos written in one transaction, read when it commits so that later changes in the same
+     * transaction are included.
+     */
+    public static final class Changes {
+
+        private final Map<Long, Todo> put = new LinkedHashMap<>();
+        private final Set<Long> removed = new HashSet<>();
+        private final Set<Long> removedCategories = new HashSet<>();
+
+        public void put(Todo todo) {
+            removed.remove(todo.getId());
+            put.put(todo.getId(), todo);
+        }
+
+        public void remove(Long todoId) {
+            put.remove(todoId);
+            removed.add(todoId);
+        }
+
+        public void removeCategory(Long categoryId) {
+            put.values().removeIf(todo -> todo.getCategory().getId().equals(categoryId));
+            removedCategories.add(categoryId);
+        }
+    }
+
+    /**
+     * The index of one user. Todos get consecutive document numbers; a changed todo is removed and
+     * added again under a new number, and removed numbers stay in the postings until the index is
+     * built again.
+     */
+    static final class UserIndex {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Integer> documentsByTodoId = new HashMap<>();
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private final BitSet removedDocuments = new BitSet();
+        private long[] todoIds = new long[64];
+        private long[] categoryIds = new long[64];
+        private int size;
+
+        int documents() {
+            return documentsByTodoId.size();
+        }
+
+        int removed() {
+            return size - documentsByTodoId.size();
+        }
+
+        void apply(Changes changes) {
+            lock.writeLock().lock();
+            try {
+                changes.removed.forEach(this::remove);
+                if (!changes.removedCategories.isEmpty()) {
+                    for (int document = removedDocuments.nextClearBit(0); document < size;
+                         document = removedDocuments.nextClearBit(document + 1)) {
+                        if (changes.removedCategories.contains(categoryIds[document])) {
+                            remove(todoIds[document]);
+                        }
+                    }
+                }
+                changes.put.values().forEach(todo ->
+                        put(todo.getId(), todo.getCategory().getId(), todo.getTitle(), todo.getDescription()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void put(Long todoId, Long categoryId, String title, String description) {
+            remove(todoId);
+            if (size == todoIds.length) {
+                todoIds = Arrays.copyOf(todoIds, size * 2);
+                categoryIds = Arrays.copyOf(categoryIds, size * 2);
+            }
+            int document = size++;
+            todoIds[document] = todoId;
+            categoryIds[document] = categoryId;
+            documentsByTodoId.put(todoId, document);
+
+            Map<String, Integer> weights = new HashMap<>();
+            tokens(title).forEach(token -> weights.merge(token, TITLE_WEIGHT, Integer::sum));
+            tokens(description).forEach(token -> weights.merge(token, 1, Integer::sum));
+            weights.forEach((token, weight) -> terms.computeIfAbsent(token, t -> new Postings()).add(document, weight));
+        }
+
+        private void remove(Long todoId) {
+            Integer document = documentsByTodoId.remove(todoId);
+            if (document != null) {
+                removedDocuments.set(document);
+            }
+        }
+
+        // BM25-style scores summed over the query words; a prefix match counts by how much of the word it covers
+        List<Hit> search(List<String> words, int limit) {
+            lock.readLock().lock();
+            try {
+                int live = documentsByTodoId.size();
+                float[] total = new float[size];
+                float[] word = new float[size];
+                int[] matched = new int[size];
+                for (int w = 0; w < words.size(); w++) {
+                    String query = words.get(w);
+                    Map<String, Postings> candidates = w == words.size() - 1
+                            ? terms.subMap(query, true, query + Character.MAX_VALUE, false)
+                            : terms.containsKey(query) ? Map.of(query, terms.get(query)) : Map.of();
+                    Arrays.fill(word, 0);
+                    for (Map.Entry<String, Postings> term : candidates.entrySet()) {
+                        Postings postings = term.getValue();
+                        double idf = Math.log(1 + (double) live / postings.size);
+                        double coverage = (double) query.length() / term.getKey().length();
+                        for (int i = 0; i < postings.size; i++) {
+                            int weight = postings.weights[i];
+                            float score = (float) (idf * coverage * weight * 2.2 / (weight + 1.2));
+                            if (score > word[postings.documents[i]]) {
+                                word[postings.documents[i]] = score;
+                            }
+                        }
+                    }
+                    for (int document = 0; document < size; document++) {
+                        if (word[document] > 0) {
+                            total[document] += word[document];
+                            matched[document]++;
+                        }
+                    }
+                }
+
+                Comparator<Hit> order = Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::todoId);
+                PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, order);
+                for (int document = 0; document < size; document++) {
+                    if (matched[document] == words.size() && !removedDocuments.get(document)) {
+                        best.add(new Hit(todoIds[document], total[document]));
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+                List<Hit> hits = new ArrayList<>(best);
+                hits.sort(order.reversed());
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Documents containing a term, in ascending order, with the weight of the term in each
+    private static final class Postings {
+
+        private int[] documents = new int[2];
+        private int[] weights = new int[2];
+        private int size;
+
+        void add(int document, int weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size++] = weight;
+        }
+    }
+}
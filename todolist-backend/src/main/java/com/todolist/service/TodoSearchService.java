@@ -0,0 +1,78 @@
+package com.todolist.service;
+
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.User;
+import com.todolist.repository.TodoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text search over the current user's todos: the ids come from {@link TodoSearchIndex}, the
+ * todos themselves from one primary key lookup, so a search reads no more rows than it returns.
+ */
+@Service
+@Transactional(readOnly = true)
+public class TodoSearchService {
+
+    private static final int MAX_WORDS = 10;
+
+    private final TodoRepository todoRepository;
+    private final TodoSearchIndex todoSearchIndex;
+    private final UserService userService;
+
+    @Value("${app.search.default-limit:20}")
+    private int defaultLimit;
+
+    @Value("${app.search.max-limit:100}")
+    private int maxLimit;
+
+    public TodoSearchService(TodoRepository todoRepository, TodoSearchIndex todoSearchIndex, UserService userService) {
+        this.todoRepository = todoRepository;
+        this.todoSearchIndex = todoSearchIndex;
+        this.userService = userService;
+    }
+
+    // Best match first; rankings are left out, as counting them would cost a query per todo
+    public List<TodoDto> search(String query, Integer limit) {
+        int maxResults = limit != null ? Math.min(limit, maxLimit) : defaultLimit;
+        if (maxResults < 1) {
+            throw new RuntimeException("Limit must be positive");
+        }
+        int words = TodoSearchIndex.tokens(query).size();
+        if (words == 0) {
+            throw new RuntimeException("Search query is required");
+        }
+        if (words > MAX_WORDS) {
+            throw new RuntimeException("Search query must not exceed " + MAX_WORDS + " words");
+        }
+
+        User currentUser = userService.getCurrentUser();
+        List<TodoSearchIndex.Hit> hits = todoSearchIndex.search(currentUser.getId(), query, maxResults,
+                () -> todoRepository.findTextByUser(currentUser));
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, TodoDto> todosById = new HashMap<>();
+        for (TodoDto dto : todoRepository.findListingByUserAndIdIn(currentUser,
+                hits.stream().map(TodoSearchIndex.Hit::todoId).toList())) {
+            dto.setRanking(null);
+            todosById.put(dto.getId(), dto);
+        }
+        // A todo deleted since the index was read is skipped
+        List<TodoDto> todos = new ArrayList<>(hits.size());
+        for (TodoSearchIndex.Hit hit : hits) {
+            TodoDto dto = todosById.get(hit.todoId());
+            if (dto != null) {
+                todos.add(dto);
+            }
+        }
+        return todos;
+    }
+}
@@ -1,16 +1,28 @@
 package com.todolist.service;
 
+import com.todolist.dto.FieldSet;
 import com.todolist.dto.TodoDto;
+import com.todolist.dto.TodoPageDto;
 import com.todolist.entity.Category;
 import com.todolist.entity.Todo;
+import com.todolist.entity.Tombstone;
 import com.todolist.entity.User;
 import com.todolist.repository.CategoryRepository;
 import com.todolist.repository.TodoRepository;
+import com.todolist.repository.TombstoneRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,33 +31,164 @@ public class TodoService {
     
     private final TodoRepository todoRepository;
     private final CategoryRepository categoryRepository;
+    private final TombstoneRepository tombstoneRepository;
     private final UserService userService;
+    private final RankingService rankingService;
+    private final DataVersionService dataVersionService;
+    private final ListingCache listingCache;
+    private final TodoSearchIndex todoSearchIndex;
     
-    public TodoService(TodoRepository todoRepository, CategoryRepository categoryRepository, UserService userService) {
+    @Value("${app.todos.page.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${app.todos.page.max-size:200}")
+    private int maxPageSize;
+    
+    public TodoService(TodoRepository todoRepository, CategoryRepository categoryRepository,
+                       TombstoneRepository tombstoneRepository, UserService userService, RankingService rankingService,
+                       DataVersionService dataVersionService, ListingCache listingCache,
+                       TodoSearchIndex todoSearchIndex) {
         this.todoRepository = todoRepository;
         this.categoryRepository = categoryRepository;
+        this.tombstoneRepository = tombstoneRepository;
         this.userService = userService;
+        this.rankingService = rankingService;
+        this.dataVersionService = dataVersionService;
+        this.listingCache = listingCache;
+        this.todoSearchIndex = todoSearchIndex;
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<TodoDto> getAllTodos() {
+        return getAllTodos(FieldSet.ALL);
+    }
+    
+    // Cache hits need no transaction; on a miss the queries run in their own
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<TodoDto> getAllTodos(FieldSet fields) {
         User currentUser = userService.getCurrentUser();
-        return todoRepository.findByUserOrderedByCategoryAndCompletion(currentUser)
-                .stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return listingCache.get(currentUser.getId(), "todos" + fields.key(),
+                () -> withRankings(fields.isAll() ? todoRepository.findListingByUser(currentUser)
+                        : todoRepository.findListing(currentUser, null, fields)));
     }
     
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<TodoDto> getTodosByCategory(String categoryName) {
+        return getTodosByCategory(categoryName, FieldSet.ALL);
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<TodoDto> getTodosByCategory(String categoryName, FieldSet fields) {
+        User currentUser = userService.getCurrentUser();
+        return listingCache.get(currentUser.getId(), "todos:" + categoryName + fields.key(), () -> {
+            Category category = categoryRepository.findByUserAndName(currentUser, categoryName)
+                    .orElseThrow(() -> new RuntimeException("Category not found: " + categoryName));
+            return withRankings(fields.isAll() ? todoRepository.findListingByUserAndCategory(currentUser, category)
+                    : todoRepository.findListing(currentUser, category, fields));
+        });
+    }
+    
+    @Transactional(readOnly = true)
+    public TodoPageDto getTodoPage(Integer size, String cursor) {
+        return getTodoPage(size, cursor, FieldSet.ALL);
+    }
+    
+    @Transactional(readOnly = true)
+    public TodoPageDto getTodoPage(Integer size, String cursor, FieldSet fields) {
+        User currentUser = userService.getCurrentUser();
+        return getPage(currentUser, categoryRepository.findByUserOrderByNameAsc(currentUser), size, cursor, fields);
+    }
+    
+    @Transactional(readOnly = true)
+    public TodoPageDto getTodoPageByCategory(String categoryName, Integer size, String cursor) {
+        return getTodoPageByCategory(categoryName, size, cursor, FieldSet.ALL);
+    }
+    
+    @Transactional(readOnly = true)
+    public TodoPageDto getTodoPageByCategory(String categoryName, Integer size, String cursor, FieldSet fields) {
         User currentUser = userService.getCurrentUser();
         Category category = categoryRepository.findByUserAndName(currentUser, categoryName)
                 .orElseThrow(() -> new RuntimeException("Category not found: " + categoryName));
+        return getPage(currentUser, List.of(category), size, cursor, fields);
+    }
+    
+    // Walks the rank groups in listing order, each read with an index seek after the cursor position,
+    // so the cost of a page does not depend on how many todos come before it
+    private TodoPageDto getPage(User user, List<Category> categories, Integer size, String cursorToken, FieldSet fields) {
+        int pageSize = size != null ? Math.min(size, maxPageSize) : defaultPageSize;
+        if (pageSize < 1) {
+            throw new RuntimeException("Page size must be positive");
+        }
+        TodoCursor cursor = cursorToken != null ? TodoCursor.decode(cursorToken) : null;
         
-        return todoRepository.findByUserAndCategoryOrderByRankingAsc(currentUser, category)
-                .stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        int first = 0;
+        if (cursor != null) {
+            first = indexOf(categories, cursor.categoryId());
+            if (first == categories.size()) {
+                // The cursor's category was deleted meanwhile: continue with the category after it, as the
+                // database orders names, since its collation may not agree with String.compareTo
+                first = categoryRepository.findFirstByUserAndNameGreaterThanOrderByNameAsc(user, cursor.categoryName())
+                        .map(next -> indexOf(categories, next.getId()))
+                        .orElse(categories.size());
+            }
+        }
+        
+        // One row more than the page to know whether there is a next page
+        List<TodoDto> page = new ArrayList<>(pageSize + 1);
+        for (int i = first; i < categories.size() && page.size() <= pageSize; i++) {
+            Category category = categories.get(i);
+            boolean resume = cursor != null && category.getId() == cursor.categoryId();
+            for (boolean done : new boolean[]{false, true}) {
+                if (page.size() > pageSize || (resume && !done && cursor.done())) {
+                    continue;
+                }
+                boolean resumeGroup = resume && done == cursor.done();
+                int ranking = resumeGroup ? cursor.ranking() : 0;
+                long rankKey = resumeGroup ? resumeKey(cursor) : Long.MIN_VALUE;
+                long id = resumeGroup ? cursor.id() : Long.MIN_VALUE;
+                int limit = pageSize + 1 - page.size();
+                List<TodoDto> rows = fields.isAll()
+                        ? todoRepository.findListingPage(category.getId(), done, rankKey, id, PageRequest.of(0, limit))
+                        : todoRepository.findListingPage(category.getId(), done, rankKey, id, limit, fields);
+                for (TodoDto row : rows) {
+                    row.setRanking(++ranking);
+                }
+                page.addAll(rows);
+            }
+        }
+        
+        if (page.size() <= pageSize) {
+            return new TodoPageDto(page, null);
+        }
+        page.remove(pageSize);
+        TodoDto last = page.get(pageSize - 1);
+        // The category name is only read when requested, the id always is
+        String categoryName = categories.stream()
+                .filter(category -> category.getId().equals(last.getCategoryId()))
+                .findFirst().orElseThrow().getName();
+        TodoCursor next = new TodoCursor(last.getCategoryId(), categoryName, last.getDone(),
+                todoRepository.findRankKeyById(last.getId()), last.getId(), last.getRanking());
+        return new TodoPageDto(page, next.encode());
     }
     
+    // A rebalance renumbers the keys of a group in the same order, so the page continues after the cursor's todo
+    // where it is now; the key in the cursor is only used once that todo has left its group
+    private long resumeKey(TodoCursor cursor) {
+        Long current = todoRepository.findRankKeyInGroup(cursor.id(), cursor.categoryId(), cursor.done());
+        return current != null ? current : cursor.rankKey();
+    }
+    
+    // The position of the category in the list, or the size of the list when it is not in it
+    private static int indexOf(List<Category> categories, long categoryId) {
+        for (int i = 0; i < categories.size(); i++) {
+            if (categories.get(i).getId() == categoryId) {
+                return i;
+            }
+        }
+        return categories.size();
+    }
+    
+    @Transactional(readOnly = true)
     public TodoDto getTodoById(Long id) {
         User currentUser = userService.getCurrentUser();
         Todo todo = todoRepository.findByIdAndUser(id, currentUser)
@@ -58,22 +201,19 @@ public class TodoService {
         Category category = categoryRepository.findByUserAndName(currentUser, todoDto.getCategoryName())
                 .orElseThrow(() -> new RuntimeException("Category not found: " + todoDto.getCategoryName()));
         
-        // Check for ranking conflicts
-        Optional<Todo> conflictingTodo = todoRepository.findByUserAndCategoryAndRankingAndNotDone(currentUser, category, todoDto.getRanking());
-        if (conflictingTodo.isPresent()) {
-            // Shift rankings if there's a conflict
-            shiftRankingsDown(currentUser, category, todoDto.getRanking());
-        }
-        
         Todo todo = new Todo();
         todo.setTitle(todoDto.getTitle());
         todo.setDescription(todoDto.getDescription());
-        todo.setRanking(todoDto.getRanking());
         todo.setDone(todoDto.getDone() != null ? todoDto.getDone() : false);
         todo.setCategory(category);
         todo.setUser(currentUser);
         
+        // Todos at or below the requested ranking move down without being rewritten
+        rankingService.placeAt(todo, todoDto.getRanking());
+        
         Todo saved = todoRepository.save(todo);
+        todoSearchIndex.changes(currentUser.getId()).put(saved);
+        dataVersionService.increment(currentUser);
         return convertToDto(saved);
     }
     
@@ -83,20 +223,19 @@ public class TodoService {
                 .orElseThrow(() -> new RuntimeException("Todo not found with id: " + id));
         
         // Update category if changed
+        boolean categoryChanged = false;
         if (todoDto.getCategoryName() != null && !todoDto.getCategoryName().equals(todo.getCategory().getName())) {
             Category newCategory = categoryRepository.findByUserAndName(currentUser, todoDto.getCategoryName())
                     .orElseThrow(() -> new RuntimeException("Category not found: " + todoDto.getCategoryName()));
             todo.setCategory(newCategory);
+            categoryChanged = true;
         }
         
-        // Check for ranking conflicts if ranking changed
-        if (todoDto.getRanking() != null && !todoDto.getRanking().equals(todo.getRanking())) {
-            Optional<Todo> conflictingTodo = todoRepository.findByUserAndCategoryAndRankingAndNotDone(currentUser, todo.getCategory(), todoDto.getRanking());
-            if (conflictingTodo.isPresent() && !conflictingTodo.get().getId().equals(todo.getId())) {
-                shiftRankingsDown(currentUser, todo.getCategory(), todoDto.getRanking());
-            }
-            todo.setRanking(todoDto.getRanking());
-        }
+        boolean doneChanged = todoDto.getDone() != null && !todoDto.getDone().equals(todo.getDone());
+        
+        // Move only if the requested ranking differs from the current position
+        boolean rankingChanged = !categoryChanged && !doneChanged && todoDto.getRanking() != null
+                && todoDto.getRanking() != rankingService.positionOf(todo);
         
         if (todoDto.getTitle() != null) {
             todo.setTitle(todoDto.getTitle());
@@ -108,7 +247,16 @@ public class TodoService {
             todo.setDone(todoDto.getDone());
         }
         
+        if (categoryChanged || rankingChanged) {
+            rankingService.placeAt(todo, todoDto.getRanking());
+        } else if (doneChanged) {
+            // Appended to the todos of its new done state, as when toggling
+            rankingService.placeAt(todo, null);
+        }
+        
         Todo saved = todoRepository.save(todo);
+        todoSearchIndex.changes(currentUser.getId()).put(saved);
+        dataVersionService.increment(currentUser);
         return convertToDto(saved);
     }
     
@@ -117,6 +265,9 @@ public class TodoService {
         Todo todo = todoRepository.findByIdAndUser(id, currentUser)
                 .orElseThrow(() -> new RuntimeException("Todo not found with id: " + id));
         todoRepository.delete(todo);
+        tombstoneRepository.save(new Tombstone(currentUser.getId(), Tombstone.EntityType.TODO, id));
+        todoSearchIndex.changes(currentUser.getId()).remove(id);
+        dataVersionService.increment(currentUser);
     }
     
     public TodoDto toggleTodo(Long id) {
@@ -124,40 +275,90 @@ public class TodoService {
         Todo todo = todoRepository.findByIdAndUser(id, currentUser)
                 .orElseThrow(() -> new RuntimeException("Todo not found with id: " + id));
         
-        todo.setDone(!todo.getDone());
+        // Its rank key belongs to the other group, so it is appended to its new one
+        boolean done = !todo.getDone();
+        rankingService.placeAt(todo, done, null);
+        todo.setDone(done);
         Todo saved = todoRepository.save(todo);
+        // The text is unchanged, which keeps the search index
+        todoSearchIndex.markChanged(currentUser.getId());
+        dataVersionService.increment(currentUser);
         return convertToDto(saved);
     }
     
+    // Orders the todos sent of each rank group by their rankings relative to each other; see TodoController.reorderTodos
     public List<TodoDto> reorderTodos(List<TodoDto> todoDtos) {
         User currentUser = userService.getCurrentUser();
+        Map<Long, Integer> requestedRankings = new LinkedHashMap<>();
         for (TodoDto dto : todoDtos) {
-            Todo todo = todoRepository.findByIdAndUser(dto.getId(), currentUser)
-                    .orElseThrow(() -> new RuntimeException("Todo not found with id: " + dto.getId()));
-            todo.setRanking(dto.getRanking());
-            todoRepository.save(todo);
+            requestedRankings.put(dto.getId(), dto.getRanking());
+        }
+        
+        Map<Long, Todo> todosById = new HashMap<>();
+        for (Todo todo : todoRepository.findByUserAndIdIn(currentUser, requestedRankings.keySet())) {
+            todosById.put(todo.getId(), todo);
+        }
+        
+        Map<RankingService.RankGroup, List<Todo>> groups = new LinkedHashMap<>();
+        for (Long id : requestedRankings.keySet()) {
+            Todo todo = todosById.get(id);
+            if (todo == null) {
+                throw new RuntimeException("Todo not found with id: " + id);
+            }
+            groups.computeIfAbsent(RankingService.RankGroup.of(todo), group -> new ArrayList<>()).add(todo);
+        }
+        
+        // Current order first, so todos with equal (or no) requested ranking keep their relative order
+        for (List<Todo> group : groups.values()) {
+            group.sort(RankingService.RANK_ORDER);
+            group.sort(Comparator.comparing(todo -> requestedRankings.get(todo.getId()),
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        rankingService.reorder(groups.values());
+        // Rankings only, which keeps the search index
+        todoSearchIndex.markChanged(currentUser.getId());
+        dataVersionService.increment(currentUser);
+        
+        // The moved todos are flushed as one JDBC batch before this read, which also yields the new rankings
+        Set<Long> categoryIds = groups.keySet().stream()
+                .map(RankingService.RankGroup::categoryId)
+                .collect(Collectors.toSet());
+        Map<Long, TodoDto> reordered = new HashMap<>();
+        for (TodoDto dto : withRankings(todoRepository.findListingByUserAndCategoryIds(currentUser, categoryIds))) {
+            reordered.put(dto.getId(), dto);
         }
         
         return todoDtos.stream()
-                .map(dto -> getTodoById(dto.getId()))
+                .map(dto -> reordered.get(dto.getId()))
                 .collect(Collectors.toList());
     }
     
-    private void shiftRankingsDown(User user, Category category, Integer fromRanking) {
-        List<Todo> todosToShift = todoRepository.findByUserAndCategoryAndRankingGreaterThanEqualAndNotDoneOrderByRanking(user, category, fromRanking);
-        
-        for (Todo todo : todosToShift) {
-            todo.setRanking(todo.getRanking() + 1);
-            todoRepository.save(todo);
+    // Listings are ordered by category, done state and rank key, so the ranking is counted in one pass
+    static List<TodoDto> withRankings(List<TodoDto> dtos) {
+        Long categoryId = null;
+        Boolean done = null;
+        int ranking = 0;
+        for (TodoDto dto : dtos) {
+            if (!dto.getCategoryId().equals(categoryId) || !dto.getDone().equals(done)) {
+                categoryId = dto.getCategoryId();
+                done = dto.getDone();
+                ranking = 0;
+            }
+            dto.setRanking(++ranking);
         }
+        return dtos;
+    }
+    
+    TodoDto convertToDto(Todo todo) {
+        return convertToDto(todo, rankingService.positionOf(todo));
     }
     
-    private TodoDto convertToDto(Todo todo) {
+    TodoDto convertToDto(Todo todo, int ranking) {
         TodoDto dto = new TodoDto();
         dto.setId(todo.getId());
         dto.setTitle(todo.getTitle());
         dto.setDescription(todo.getDescription());
-        dto.setRanking(todo.getRanking());
+        dto.setRanking(ranking);
         dto.setDone(todo.getDone());
         dto.setDateCreated(todo.getDateCreated());
         dto.setAuditDateCreated(todo.getAuditDateCreated());
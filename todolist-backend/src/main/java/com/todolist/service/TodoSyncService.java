@@ -0,0 +1,117 @@
+package com.todolist.service;
+
+import com.todolist.dto.CategoryDto;
+import com.todolist.dto.TodoChangesDto;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Tombstone;
+import com.todolist.entity.User;
+import com.todolist.repository.CategoryRepository;
+import com.todolist.repository.TodoRepository;
+import com.todolist.repository.TombstoneRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Delta sync for clients that keep a copy of the todos: changed rows are found by their audit
+ * modification time, deletions by their tombstones. The token is the time the previous sync started;
+ * rows are read from a few seconds before it, so changes of transactions that were still running at
+ * that time (or stamped by an instance whose clock is slightly behind) are not missed.
+ */
+@Service
+@Transactional(readOnly = true)
+public class TodoSyncService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TodoSyncService.class);
+    
+    private final TodoRepository todoRepository;
+    private final CategoryRepository categoryRepository;
+    private final TombstoneRepository tombstoneRepository;
+    private final CategoryService categoryService;
+    private final UserService userService;
+    
+    @Value("${app.sync.overlap:10}")
+    private long overlapSeconds;
+    
+    @Value("${app.sync.tombstone-retention:30}")
+    private long tombstoneRetentionDays;
+    
+    public TodoSyncService(TodoRepository todoRepository, CategoryRepository categoryRepository,
+                           TombstoneRepository tombstoneRepository, CategoryService categoryService,
+                           UserService userService) {
+        this.todoRepository = todoRepository;
+        this.categoryRepository = categoryRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.categoryService = categoryService;
+        this.userService = userService;
+    }
+    
+    public TodoChangesDto getChanges(String since) {
+        User currentUser = userService.getCurrentUser();
+        LocalDateTime now = LocalDateTime.now();
+        String token = encode(now);
+        LocalDateTime from = since != null ? decode(since).minusSeconds(overlapSeconds) : null;
+        
+        // Without a token, or one from before the oldest tombstones kept, the client starts over
+        if (from == null || from.isBefore(now.minusDays(tombstoneRetentionDays))) {
+            List<TodoDto> todos = TodoService.withRankings(todoRepository.findListingByUser(currentUser));
+            return new TodoChangesDto(true, todos, categoryService.getAllCategories(currentUser),
+                    List.of(), List.of(), token);
+        }
+        
+        // Rankings are dense per rank group, so they are counted over the whole categories the changes are in
+        List<TodoDto> todos = new ArrayList<>();
+        List<Long> categoryIds = todoRepository.findCategoryIdsModifiedSince(currentUser, from);
+        if (!categoryIds.isEmpty()) {
+            for (TodoDto dto : TodoService.withRankings(todoRepository.findListingByUserAndCategoryIds(currentUser, categoryIds))) {
+                if (!dto.getAuditDateModified().isBefore(from)) {
+                    todos.add(dto);
+                }
+            }
+        }
+        
+        List<Long> deletedTodoIds = new ArrayList<>();
+        List<Long> deletedCategoryIds = new ArrayList<>();
+        for (Tombstone tombstone : tombstoneRepository.findDeletedSince(currentUser.getId(), from)) {
+            switch (tombstone.getEntityType()) {
+                case TODO -> deletedTodoIds.add(tombstone.getEntityId());
+                case CATEGORY -> deletedCategoryIds.add(tombstone.getEntityId());
+            }
+        }
+        
+        // Any todo change may change the counts of the categories, which are few, so all of them are sent
+        boolean changed = !todos.isEmpty() || !deletedTodoIds.isEmpty() || !deletedCategoryIds.isEmpty()
+                || categoryRepository.existsByUserAndAuditDateModifiedGreaterThanEqual(currentUser, from);
+        List<CategoryDto> categories = changed ? categoryService.getAllCategories(currentUser) : List.of();
+        return new TodoChangesDto(false, todos, categories, deletedTodoIds, deletedCategoryIds, token);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.sync.tombstone-purge-interval:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        int deleted = tombstoneRepository.deleteDeletedBefore(LocalDateTime.now().minusDays(tombstoneRetentionDays));
+        logger.debug("Purged {} tombstones", deleted);
+    }
+    
+    private static String encode(LocalDateTime time) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(time.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static LocalDateTime decode(String token) {
+        try {
+            return LocalDateTime.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid sync token: " + token);
+        }
+    }
+}
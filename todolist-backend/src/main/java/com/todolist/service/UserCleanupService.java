@@ -1,44 +1,114 @@
 package com.todolist.service;
 
-import com.todolist.entity.User;
+import com.todolist.repository.ExpiredUser;
 import com.todolist.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.todolist.security.AuthenticatedUserCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Deletes accounts whose email validation expired, in chunks of app.user-cleanup.batch-size users,
+ * each chunk one short transaction with a single DELETE; their categories and todos go through the
+ * ON DELETE CASCADE foreign keys. Their sign-ins and search indexes cached on this instance are
+ * dropped; other instances keep theirs until they expire. With several backend instances only the
+ * one holding the "user-cleanup" lease runs it.
+ */
 @Service
 public class UserCleanupService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserCleanupService.class);
+    private static final String JOB = "user-cleanup";
 
-    @Autowired
-    private UserRepository userRepository;
+    private final UserRepository userRepository;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final TodoSearchIndex todoSearchIndex;
+    private final JobLeaseService jobLeaseService;
+    private final MeterRegistry meterRegistry;
+    private final Counter deletedUsers;
 
-    @Scheduled(fixedRate = 86400000)
+    @Value("${app.user-cleanup.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.user-cleanup.lease:600}")
+    private long leaseSeconds;
+
+    public UserCleanupService(UserRepository userRepository, AuthenticatedUserCache authenticatedUserCache,
+                              TodoSearchIndex todoSearchIndex, JobLeaseService jobLeaseService,
+                              MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.todoSearchIndex = todoSearchIndex;
+        this.jobLeaseService = jobLeaseService;
+        this.meterRegistry = meterRegistry;
+        this.deletedUsers = Counter.builder("users.cleanup.deleted")
+                .description("Expired unvalidated users deleted by the cleanup job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRateString = "${app.user-cleanup.interval:86400000}",
+               initialDelayString = "${app.user-cleanup.initial-delay:0}")
     public void cleanupExpiredUnvalidatedUsers() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        if (!jobLeaseService.tryAcquire(JOB, Duration.ofSeconds(leaseSeconds))) {
+            logger.debug("User cleanup is running on another instance");
+            sample.stop(runTimer("skipped"));
+            return;
+        }
+        String outcome = "completed";
+        int deleted = 0;
         try {
+            // Accounts expiring while the job runs are left for the next run, so it always ends
             LocalDateTime now = LocalDateTime.now();
-            List<User> expiredUsers = userRepository.findExpiredUnvalidatedUsers(now);
-
-            if (!expiredUsers.isEmpty()) {
-                logger.info("Found {} expired unvalidated users to delete", expiredUsers.size());
-
-                for (User user : expiredUsers) {
-                    logger.info("Deleting expired unvalidated user: {} ({})", user.getUsername(), user.getEmail());
+            List<ExpiredUser> expiredUsers;
+            do {
+                expiredUsers = userRepository.findExpiredUnvalidatedUsers(now, PageRequest.of(0, batchSize));
+                if (expiredUsers.isEmpty()) {
+                    break;
                 }
-
-                userRepository.deleteAll(expiredUsers);
-                logger.info("Successfully deleted {} expired unvalidated users", expiredUsers.size());
-            } else {
-                logger.debug("No expired unvalidated users found for cleanup");
-            }
+                int chunk = userRepository.deleteExpiredUnvalidatedUsers(
+                        expiredUsers.stream().map(ExpiredUser::getId).toList(), now);
+                expiredUsers.forEach(user -> {
+                    authenticatedUserCache.evict(user.getUsername());
+                    todoSearchIndex.evict(user.getId());
+                });
+                deletedUsers.increment(chunk);
+                deleted += chunk;
+                logger.debug("Deleted {} expired unvalidated users", chunk);
+                if (!jobLeaseService.tryAcquire(JOB, Duration.ofSeconds(leaseSeconds))) {
+                    outcome = "lease-lost";
+                    logger.warn("User cleanup lost its lease after deleting {} users, leaving the rest to its new owner", deleted);
+                    return;
+                }
+            } while (expiredUsers.size() == batchSize);
         } catch (Exception e) {
+            outcome = "failed";
             logger.error("Error during user cleanup: {}", e.getMessage(), e);
+        } finally {
+            if (!outcome.equals("lease-lost")) {
+                jobLeaseService.release(JOB);
+            }
+            long nanos = sample.stop(runTimer(outcome));
+            if (deleted > 0) {
+                logger.info("Deleted {} expired unvalidated users in {} ms", deleted, nanos / 1_000_000);
+            }
         }
     }
-}
\ No newline at end of file
+
+    private Timer runTimer(String outcome) {
+        return Timer.builder("users.cleanup")
+                .tag("outcome", outcome)
+                .description("Runs of the expired user cleanup job")
+                .register(meterRegistry);
+    }
+}
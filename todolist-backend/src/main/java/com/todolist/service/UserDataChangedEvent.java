@@ -0,0 +1,8 @@
+package com.todolist.service;
+
+/**
+ * Published once a change to a user's todos or categories has committed, on this instance or,
+ * in cluster mode, on another one.
+ */
+public record UserDataChangedEvent(Long userId) {
+}
@@ -0,0 +1,238 @@
+package com.todolist.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-sent "change" events for the open event streams of a user, sent whenever a
+ * {@link UserDataChangedEvent} arrives; clients then fetch GET /api/todos/changes.
+ * An idle stream is an async request and holds no thread. Events are queued per stream in a
+ * bounded buffer and written by a small pool of sender threads, so a slow client never blocks the
+ * thread that committed the change; a stream whose buffer is full is closed and the client reconnects.
+ * The senders are platform threads because an emitter writes to the socket while holding its monitor.
+ * A write blocked for longer than the send timeout closes its stream too, and the pool gets a thread in
+ * place of the blocked one until the container's write timeout fails the write. Closed streams are
+ * completed on their own threads, which wait for the emitter's monitor without taking a sender.
+ */
+@Service
+public class UserEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserEventService.class);
+
+    // Built once; the parts of an event are written in iteration order
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> CHANGE_EVENT = Collections.unmodifiableSet(
+            SseEmitter.event().name("change").data("{}").build());
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = Collections.unmodifiableSet(
+            SseEmitter.event().comment("heartbeat").build());
+
+    private final UserService userService;
+    private final ConcurrentMap<Long, Set<EventStream>> streams = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor senders;
+    private final ExecutorService closers;
+    private final Counter evictions;
+
+    @Value("${app.events.timeout:1800000}")
+    private long timeoutMillis;
+
+    @Value("${app.events.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${app.events.max-streams-per-user:10}")
+    private int maxStreamsPerUser;
+
+    @Value("${app.events.send-timeout:10000}")
+    private long sendTimeoutMillis;
+
+    public UserEventService(UserService userService, MeterRegistry meterRegistry,
+                            @Value("${app.events.sender-threads:8}") int senderThreads) {
+        this.userService = userService;
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), Thread.ofPlatform().name("event-sender-", 0).factory());
+        this.closers = Executors.newCachedThreadPool(Thread.ofPlatform().name("event-closer-", 0).factory());
+        this.evictions = Counter.builder("events.streams.evicted")
+                .description("Event streams closed because the client did not keep up")
+                .register(meterRegistry);
+        Gauge.builder("events.streams", streams, map -> map.values().stream().mapToInt(Set::size).sum())
+                .description("Open event streams")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        Long userId = userService.getCurrentUserId();
+        EventStream stream = new EventStream(userId, new SseEmitter(timeoutMillis));
+        streams.compute(userId, (id, userStreams) -> {
+            if (userStreams == null) {
+                userStreams = ConcurrentHashMap.newKeySet();
+            }
+            if (userStreams.size() >= maxStreamsPerUser) {
+                throw new RuntimeException("At most " + maxStreamsPerUser + " event streams may be open per user");
+            }
+            userStreams.add(stream);
+            return userStreams;
+        });
+        stream.emitter.onCompletion(stream::close);
+        // Completing it ends the response normally instead of as a timeout error
+        stream.emitter.onTimeout(() -> {
+            stream.close();
+            stream.emitter.complete();
+        });
+        stream.emitter.onError(error -> stream.close());
+        // Commits the response headers, so the client knows the stream is open
+        stream.offer(HEARTBEAT);
+        return stream.emitter;
+    }
+
+    @EventListener
+    public void onUserDataChanged(UserDataChangedEvent event) {
+        Set<EventStream> userStreams = streams.get(event.userId());
+        if (userStreams != null) {
+            userStreams.forEach(stream -> stream.offer(CHANGE_EVENT));
+        }
+    }
+
+    // Keeps proxies from dropping idle streams and finds the ones whose client went away
+    @Scheduled(fixedDelayString = "${app.events.heartbeat-interval:30000}")
+    public void sendHeartbeats() {
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> stream.offer(HEARTBEAT)));
+    }
+
+    // Checked once per send timeout, so a blocked write is given up after one to two of them
+    @Scheduled(fixedDelayString = "${app.events.send-timeout:10000}")
+    public void abandonBlockedWrites() {
+        long now = System.nanoTime();
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> stream.abandonIfBlockedSince(now)));
+    }
+
+    // Adds a sender for each write given up on and removes it once that write returns
+    private synchronized void resizeSenders(int delta) {
+        if (delta > 0) {
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+        } else {
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        streams.values().forEach(userStreams -> userStreams.forEach(stream -> {
+            try {
+                stream.emitter.complete();
+            } catch (IllegalStateException e) {
+                // The container already recycled the response
+            }
+        }));
+        senders.shutdown();
+        closers.shutdown();
+    }
+
+    private final class EventStream {
+
+        private static final long IDLE = 0;
+        private static final long ABANDONED = Long.MIN_VALUE;
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // System.nanoTime() when the running write started, IDLE between writes, ABANDONED once given up on
+        private final AtomicLong writingSince = new AtomicLong(IDLE);
+
+        EventStream(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                logger.debug("Closing the event stream of user {}, {} events are waiting", userId, bufferSize);
+                evict();
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        // At most one writer per stream; events offered while it finishes start the next one
+        private void send() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    writingSince.set(System.nanoTime());
+                    try {
+                        emitter.send(event);
+                    } finally {
+                        if (writingSince.getAndSet(IDLE) == ABANDONED) {
+                            resizeSenders(-1);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                close();
+                return;
+            } finally {
+                sending.set(false);
+            }
+            if (!buffer.isEmpty() && sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        void abandonIfBlockedSince(long now) {
+            long since = writingSince.get();
+            if (since != IDLE && since != ABANDONED && now - since > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis)
+                    && writingSince.compareAndSet(since, ABANDONED)) {
+                resizeSenders(1);
+                logger.debug("Closing the event stream of user {}, a write is blocked for {} ms", userId, sendTimeoutMillis);
+                evict();
+            }
+        }
+
+        private void evict() {
+            evictions.increment();
+            close();
+            // The writer may be stuck on this emitter, so complete it on a thread of its own
+            closers.execute(emitter::complete);
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                streams.computeIfPresent(userId, (id, userStreams) -> {
+                    userStreams.remove(this);
+                    return userStreams.isEmpty() ? null : userStreams;
+                });
+            }
+        }
+    }
+}
@@ -2,11 +2,12 @@ package com.todolist.service;
 
 import com.todolist.entity.User;
 import com.todolist.repository.UserRepository;
+import com.todolist.security.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class UserService {
@@ -14,14 +15,31 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
-    public User getCurrentUser() {
+    @Autowired
+    private EmailService emailService;
+
+    public UserPrincipal getCurrentPrincipal() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
             throw new RuntimeException("User not authenticated");
         }
+        return principal;
+    }
+
+    public Long getCurrentUserId() {
+        return getCurrentPrincipal().getId();
+    }
+
+    // The principal was resolved by JwtAuthenticationFilter, so hand out a reference instead of loading the row again
+    public User getCurrentUser() {
+        return userRepository.getReferenceById(getCurrentUserId());
+    }
 
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    // The user and their validation email commit together; EmailOutboxService sends it afterwards
+    @Transactional
+    public boolean registerUser(User user) {
+        userRepository.save(user);
+        return emailService.queueEmailValidation(user.getEmail(), user.getEmailValidationToken());
     }
-}
\ No newline at end of file
+}
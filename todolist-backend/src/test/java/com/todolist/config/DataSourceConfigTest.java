@@ -0,0 +1,48 @@
+package com.todolist.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Configures pools for MySQL and H2 URLs. Fails when a MySQL pool would read the export's results
+ * whole instead of through a cursor, when another database is given the MySQL setting, or when a
+ * setting made on purpose is overridden.
+ */
+class DataSourceConfigTest {
+
+    @Test
+    void turnsOnCursorFetchForMySql() {
+        HikariDataSource dataSource = pool("jdbc:mysql://db:3306/todolist");
+        DataSourceConfig.enableCursorFetch(dataSource);
+        assertEquals("true", dataSource.getDataSourceProperties().getProperty(DataSourceConfig.MYSQL_CURSOR_FETCH));
+    }
+
+    @Test
+    void leavesOtherDatabasesAlone() {
+        HikariDataSource dataSource = pool("jdbc:h2:mem:todolist");
+        DataSourceConfig.enableCursorFetch(dataSource);
+        assertFalse(dataSource.getDataSourceProperties().containsKey(DataSourceConfig.MYSQL_CURSOR_FETCH));
+    }
+
+    @Test
+    void keepsASettingMadeOnPurpose() {
+        HikariDataSource inUrl = pool("jdbc:mysql://db:3306/todolist?useCursorFetch=false");
+        DataSourceConfig.enableCursorFetch(inUrl);
+        assertFalse(inUrl.getDataSourceProperties().containsKey(DataSourceConfig.MYSQL_CURSOR_FETCH));
+
+        HikariDataSource inProperties = pool("jdbc:mysql://db:3306/todolist");
+        inProperties.addDataSourceProperty(DataSourceConfig.MYSQL_CURSOR_FETCH, "false");
+        DataSourceConfig.enableCursorFetch(inProperties);
+        assertEquals("false", inProperties.getDataSourceProperties().getProperty(DataSourceConfig.MYSQL_CURSOR_FETCH));
+    }
+
+    // Never started, so no connection is made
+    private static HikariDataSource pool(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        return dataSource;
+    }
+}
@@ -0,0 +1,206 @@
+package com.todolist.config;
+
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls the endpoints of TodoController, CategoryController and AuthController over HTTP, asking for
+ * many distinct todo ids, then reads /actuator/prometheus as a signed-in user. Fails when an
+ * anonymous client gets the metrics or is refused the health check on the API port, when requests
+ * are not timed per controller method with histogram buckets, when a route with ids in its path has
+ * more series than statuses, or when the repository, Hibernate or connection pool meters are missing.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "app.password.bcrypt-strength=4",
+        "app.rate-limit.enabled=false"
+})
+// Tests export no metrics unless asked to
+@AutoConfigureObservability
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MetricsTest {
+
+    private static final Pattern SAMPLE = Pattern.compile("^([a-zA-Z_:][a-zA-Z0-9_:]*)(?:\\{(.*?),?})? (\\S+)$");
+    private static final Pattern LABEL = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)=\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final String[] CATEGORY_NAMES = {"Metrics Errands", "Metrics Health"};
+    private static final int IDS = 50;
+    private static final long USER_ID = 97_000_000;
+    private static final String USERNAME = "metrics";
+    private static final String PASSWORD = "metrics-password";
+
+    private static final HttpClient HTTP = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private record Sample(String name, Map<String, String> labels, double value) {
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    private String token;
+    private List<Sample> samples;
+
+    @BeforeAll
+    void callTheApiAndScrape() throws Exception {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated) VALUES (?, ?, ?, ?, ?, ?, ?, TRUE)",
+                USER_ID, USERNAME, USERNAME + "@todolist.local", passwordEncoder.encode(PASSWORD), now, now, now);
+        List<Object[]> todos = new ArrayList<>();
+        for (int c = 0; c < CATEGORY_NAMES.length; c++) {
+            long categoryId = USER_ID + c + 1;
+            jdbc.update("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                    + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryId, CATEGORY_NAMES[c], USER_ID, now, now, now);
+            for (int t = 0; t < IDS / CATEGORY_NAMES.length; t++) {
+                todos.add(new Object[]{USER_ID + 100 + c * IDS + t, "Todo " + t, (t + 1L) << 20, categoryId, USER_ID,
+                        now, now, now});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, FALSE, ?, ?, ?, ?, ?)", todos);
+        token = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser(USERNAME));
+
+        assertEquals(200, send("POST", "/api/auth/login",
+                "{\"username\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}", null).statusCode());
+        for (String path : List.of("/api/todos", "/api/todos?size=20", "/api/todos/changes", "/api/categories",
+                "/api/todos/category/Metrics%20Health", "/api/categories/name/Metrics%20Health",
+                "/api/categories/" + (USER_ID + 1))) {
+            assertEquals(200, get(path, token).statusCode(), path);
+        }
+        for (Object[] todo : todos) {
+            assertEquals(200, get("/api/todos/" + todo[0], token).statusCode());
+            assertEquals(200, send("PATCH", "/api/todos/" + todo[0] + "/toggle", null, token).statusCode());
+        }
+        // A todo that is not found is answered with 400, so the route gets a second status
+        assertEquals(400, get("/api/todos/" + Long.MAX_VALUE, token).statusCode());
+
+        HttpResponse<String> scrape = get("/actuator/prometheus", token);
+        assertEquals(200, scrape.statusCode(), "scrape as a signed-in user");
+        samples = parse(scrape.body());
+    }
+
+    // Only health is public on the API port
+    @Test
+    void refusesTheMetricsToAnonymousClients() throws Exception {
+        for (String path : List.of("/actuator/prometheus", "/actuator/metrics", "/actuator/metrics/jvm.memory.used")) {
+            int status = get(path, null).statusCode();
+            assertTrue(status == 401 || status == 403, path + " answered " + status + " without a token");
+        }
+        // Down without an SMTP server, but answered
+        int health = get("/actuator/health", null).statusCode();
+        assertFalse(health == 401 || health == 403, "/actuator/health answered " + health + " without a token");
+    }
+
+    @Test
+    void timesRequestsPerControllerMethod() {
+        List<Sample> requests = named("http_server_requests_seconds_count");
+        for (String controller : List.of("TodoController", "CategoryController", "AuthController")) {
+            assertTrue(requests.stream().anyMatch(sample -> handler(sample).startsWith(controller + ".")),
+                    "no http_server_requests timer for the methods of " + controller);
+        }
+        assertFalse(named("http_server_requests_seconds_bucket").isEmpty(), "http_server_requests has no histogram buckets");
+    }
+
+    // One per status, however many ids were requested
+    @Test
+    void keepsOneSeriesPerStatusForARouteWithIds() {
+        List<Sample> byId = named("http_server_requests_seconds_count").stream()
+                .filter(sample -> handler(sample).equals("TodoController.getTodoById")).toList();
+        assertEquals(2, byId.size(), "series for GET /api/todos/{id}: " + byId);
+        assertTrue(byId.stream().allMatch(sample -> sample.labels().get("uri").equals("/api/todos/{id}")), byId.toString());
+    }
+
+    @Test
+    void exportsRepositoryHibernateAndPoolMeters() {
+        for (String required : List.of("spring_data_repository_invocations_seconds_count", "hibernate_statements_total",
+                "hibernate_entities_loads_total", "hibernate_flushes_total", "hibernate_query_executions_total",
+                "hikaricp_connections_active", "hikaricp_connections_pending", "hikaricp_connections_acquire_seconds_bucket")) {
+            assertFalse(named(required).isEmpty(), "no " + required);
+        }
+    }
+
+    private static String handler(Sample sample) {
+        return sample.labels().getOrDefault("handler", "");
+    }
+
+    private List<Sample> named(String name) {
+        return samples.stream().filter(sample -> sample.name().equals(name)).toList();
+    }
+
+    private HttpResponse<String> get(String path, String bearer) throws IOException, InterruptedException {
+        return send("GET", path, null, bearer);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json, String bearer)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, json != null ? HttpRequest.BodyPublishers.ofString(json) : HttpRequest.BodyPublishers.noBody());
+        if (json != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (bearer != null) {
+            request.header("Authorization", "Bearer " + bearer);
+        }
+        return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<Sample> parse(String scrape) {
+        List<Sample> samples = new ArrayList<>();
+        for (String line : scrape.split("\n")) {
+            Matcher matcher = SAMPLE.matcher(line);
+            if (line.startsWith("#") || !matcher.matches()) {
+                continue;
+            }
+            Map<String, String> labels = new HashMap<>();
+            if (matcher.group(2) != null) {
+                Matcher label = LABEL.matcher(matcher.group(2));
+                while (label.find()) {
+                    labels.put(label.group(1), label.group(2));
+                }
+            }
+            samples.add(new Sample(matcher.group(1), labels, Double.parseDouble(matcher.group(3))));
+        }
+        return samples;
+    }
+}
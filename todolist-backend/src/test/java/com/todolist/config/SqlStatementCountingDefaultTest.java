@@ -0,0 +1,40 @@
+package com.todolist.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots with application.properties alone, without the test profile that turns statement counting
+ * on. Fails when the DataSource is wrapped by {@link SqlStatementCounter} or
+ * {@link SqlStatementCountFilter} is registered without app.sql-statements.enabled.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sql-statements-default;DB_CLOSE_DELAY=-1",
+        "spring.liquibase.enabled=false",
+        "spring.jpa.show-sql=false",
+        "jwt.secret=sql-statements-secret-sql-statements-secret",
+        "spring.mail.host=localhost",
+        "spring.mail.username=test@todolist.local"
+})
+class SqlStatementCountingDefaultTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void isOffByDefault() {
+        assertInstanceOf(HikariDataSource.class, dataSource, "the DataSource is wrapped");
+        assertTrue(context.getBeansOfType(SqlStatementCountFilter.class).isEmpty(), "the filter is registered");
+    }
+}
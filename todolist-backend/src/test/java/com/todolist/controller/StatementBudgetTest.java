@@ -0,0 +1,224 @@
+package com.todolist.controller;
+
+import com.todolist.config.SqlStatementCountFilter;
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls every endpoint of TodoController and CategoryController as users with 1, 10, 100 and 1000
+ * todos and reads the SQL statements of each request from the X-SQL-Statements header. Fails when an
+ * endpoint sends more statements than its budget in {@link #endpoints}, or more for a larger user than
+ * for the smallest one, which is how an N+1 query shows.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budgets;DB_CLOSE_DELAY=-1",
+        "app.rate-limit.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StatementBudgetTest {
+
+    private static final int[] SIZES = {1, 10, 100, 1000};
+    private static final int TODOS_PER_CATEGORY = 10;
+    private static final int MAX_BATCH = 500;
+    private static final long FIRST_ID = 10_000_000;
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    // The seeded data of one user, and the todo created through the API
+    private record Fixture(String username, List<Long> categoryIds, List<String> categoryNames, List<Long> todoIds,
+                           List<Long> createdTodoIds) {
+
+        // Encoded by MockMvc along with the rest of the path
+        String categoryName() {
+            return categoryNames.get(0);
+        }
+    }
+
+    // Endpoints that may grow do so with the page or batch size only, never with the data of the user
+    private record Endpoint(String name, int budget, boolean grows, Function<Fixture, MockHttpServletRequestBuilder> request) {
+
+        Endpoint(String name, int budget, Function<Fixture, MockHttpServletRequestBuilder> request) {
+            this(name, budget, false, request);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    private final List<Endpoint> endpoints = endpoints();
+    // Statements per endpoint and size, or -1 without the header
+    private final Map<String, int[]> statements = new LinkedHashMap<>();
+    private final Map<String, List<String>> errors = new LinkedHashMap<>();
+
+    // Method, path and body of each request; budgets are the statements sent today
+    private static List<Endpoint> endpoints() {
+        List<Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(new Endpoint("GET /api/todos", 2, f -> get("/api/todos")));
+        // One index seek per rank group on the page, up to two per category
+        endpoints.add(new Endpoint("GET /api/todos?size=50", 14, true, f -> get("/api/todos?size=50")));
+        endpoints.add(new Endpoint("GET /api/todos/category/{name}", 3, f -> get("/api/todos/category/" + f.categoryName())));
+        endpoints.add(new Endpoint("GET /api/todos/category/{name}?size=50", 4,
+                f -> get("/api/todos/category/" + f.categoryName() + "?size=50")));
+        endpoints.add(new Endpoint("GET /api/todos?size=50&fields=", 14, true, f -> get("/api/todos?size=50&fields=id,title,done")));
+        endpoints.add(new Endpoint("GET /api/todos/changes", 3, f -> get("/api/todos/changes")));
+        // The first search of each user also reads their todos into the search index
+        endpoints.add(new Endpoint("GET /api/todos/search?q=", 2, f -> get("/api/todos/search?q=todo")));
+        endpoints.add(new Endpoint("GET /api/todos/{id}", 3, f -> get("/api/todos/" + f.todoIds().get(0))));
+        endpoints.add(new Endpoint("POST /api/todos", 7, f -> send("POST", "/api/todos",
+                "{\"title\":\"Budget\",\"ranking\":1,\"categoryName\":\"" + f.categoryNames().get(0) + "\"}")));
+        endpoints.add(new Endpoint("PUT /api/todos/{id}", 8, f -> send("PUT", "/api/todos/" + f.todoIds().get(0),
+                "{\"title\":\"Renamed\",\"ranking\":1,\"categoryName\":\"" + f.categoryNames().get(0) + "\"}")));
+        endpoints.add(new Endpoint("PATCH /api/todos/{id}/toggle", 6,
+                f -> send("PATCH", "/api/todos/" + f.todoIds().get(0) + "/toggle", null)));
+        endpoints.add(new Endpoint("PUT /api/todos/reorder", 4, f -> send("PUT", "/api/todos/reorder",
+                f.todoIds().stream().map(id -> "{\"id\":" + id + ",\"title\":\"t\",\"ranking\":1}")
+                        .collect(Collectors.joining(",", "[", "]")))));
+        // One JDBC batch per hibernate.jdbc.batch_size updates, up to MAX_BATCH operations
+        endpoints.add(new Endpoint("POST /api/todos/batch", 15, true, f -> send("POST", "/api/todos/batch",
+                f.todoIds().stream().limit(MAX_BATCH).map(id -> "{\"op\":\"TOGGLE\",\"id\":" + id + "}")
+                        .collect(Collectors.joining(",", "[", "]")))));
+        endpoints.add(new Endpoint("DELETE /api/todos/{id}", 6, f -> send("DELETE", "/api/todos/" + f.createdTodoIds().get(0), null)));
+        endpoints.add(new Endpoint("GET /api/categories", 3, f -> get("/api/categories")));
+        // Without the todo counts, which are a query of their own
+        endpoints.add(new Endpoint("GET /api/categories?fields=", 2, f -> get("/api/categories?fields=id,name")));
+        endpoints.add(new Endpoint("GET /api/categories/{id}", 2, f -> get("/api/categories/" + f.categoryIds().get(0))));
+        endpoints.add(new Endpoint("GET /api/categories/name/{name}", 2, f -> get("/api/categories/name/" + f.categoryName())));
+        endpoints.add(new Endpoint("POST /api/categories", 3, f -> send("POST", "/api/categories", "{\"name\":\"Budget\"}")));
+        endpoints.add(new Endpoint("PUT /api/categories/{id}", 5, f -> send("PUT", "/api/categories/" + f.categoryIds().get(0),
+                "{\"name\":\"Renamed\"}")));
+        endpoints.add(new Endpoint("DELETE /api/categories/{id}", 6,
+                f -> send("DELETE", "/api/categories/" + f.categoryIds().get(f.categoryIds().size() - 1), null)));
+        return endpoints;
+    }
+
+    private static MockHttpServletRequestBuilder get(String path) {
+        return MockMvcRequestBuilders.get(path);
+    }
+
+    private static MockHttpServletRequestBuilder send(String method, String path, String json) {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.request(method, URI.create(path));
+        return json != null ? request.contentType(MediaType.APPLICATION_JSON).content(json) : request;
+    }
+
+    // The endpoints run in order for each size, as later ones use what earlier ones created
+    @BeforeAll
+    void callEndpoints() throws Exception {
+        endpoints.forEach(endpoint -> {
+            statements.put(endpoint.name(), new int[SIZES.length]);
+            errors.put(endpoint.name(), new ArrayList<>());
+        });
+        for (int s = 0; s < SIZES.length; s++) {
+            Fixture fixture = seed(s, SIZES[s]);
+            String authorization = "Bearer " + jwtTokenUtil.generateToken(
+                    userDetailsService.loadAuthenticatedUser(fixture.username()));
+            // The first request loads the user into the authentication cache
+            mockMvc.perform(get("/api/categories").header(HttpHeaders.AUTHORIZATION, authorization));
+            for (Endpoint endpoint : endpoints) {
+                MockHttpServletResponse response = mockMvc.perform(endpoint.request().apply(fixture)
+                        .header(HttpHeaders.AUTHORIZATION, authorization)).andReturn().getResponse();
+                if (endpoint.name().equals("POST /api/todos")) {
+                    Matcher id = ID.matcher(response.getContentAsString());
+                    if (id.find()) {
+                        fixture.createdTodoIds().add(Long.parseLong(id.group(1)));
+                    }
+                }
+                if (response.getStatus() >= 400) {
+                    errors.get(endpoint.name()).add(response.getStatus() + " with " + SIZES[s] + " todos");
+                }
+                String header = response.getHeader(SqlStatementCountFilter.HEADER);
+                statements.get(endpoint.name())[s] = header != null ? Integer.parseInt(header) : -1;
+            }
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> staysWithinBudget() {
+        return endpoints.stream().map(endpoint -> DynamicTest.dynamicTest(endpoint.name(), () -> {
+            int[] counts = statements.get(endpoint.name());
+            assertTrue(errors.get(endpoint.name()).isEmpty(), "answered " + errors.get(endpoint.name()));
+            for (int s = 0; s < SIZES.length; s++) {
+                assertTrue(counts[s] >= 0, "no " + SqlStatementCountFilter.HEADER + " header");
+                assertTrue(counts[s] <= endpoint.budget(), counts[s] + " statements with " + SIZES[s]
+                        + " todos, over the budget of " + endpoint.budget());
+                assertTrue(endpoint.grows() || counts[s] <= counts[0], counts[s] + " statements with " + SIZES[s]
+                        + " todos and " + counts[0] + " with " + SIZES[0] + ", it grows with the data");
+            }
+        }));
+    }
+
+    // A user with the given number of todos, TODOS_PER_CATEGORY to a category, open and in rank order
+    private Fixture seed(int index, int todos) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        long userId = FIRST_ID * (index + 1);
+        String username = "budget-" + todos;
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)",
+                userId, username, username + "@todolist.local", now, now, now);
+
+        int categories = Math.max(1, todos / TODOS_PER_CATEGORY);
+        List<Long> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+        List<Object[]> categoryRows = new ArrayList<>();
+        for (int c = 0; c < categories; c++) {
+            categoryIds.add(userId + c);
+            categoryNames.add("Category " + c);
+            categoryRows.add(new Object[]{userId + c, "Category " + c, userId, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryRows);
+
+        List<Long> todoIds = new ArrayList<>();
+        List<Object[]> todoRows = new ArrayList<>();
+        for (int t = 0; t < todos; t++) {
+            long todoId = userId + FIRST_ID / 2 + t;
+            todoIds.add(todoId);
+            todoRows.add(new Object[]{todoId, "Todo " + t, (t / categories + 1L) << 20, categoryIds.get(t % categories),
+                    userId, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, FALSE, ?, ?, ?, ?, ?)", todoRows);
+        return new Fixture(username, categoryIds, categoryNames, todoIds, new ArrayList<>());
+    }
+}
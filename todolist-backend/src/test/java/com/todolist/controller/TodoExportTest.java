@@ -0,0 +1,167 @@
+package com.todolist.controller;
+
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import com.todolist.security.UserPrincipal;
+import com.todolist.service.TodoExportService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Exports a user with more todos than many fetches of the export's cursor hold, and exports while
+ * app.export.max-concurrent exports are running. Fails when a todo is missing or written twice, a
+ * ranking does not restart with its rank group, or the export beyond the limit is not answered with
+ * 503 and Retry-After before its response starts.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1",
+        "app.rate-limit.enabled=false",
+        "app.export.max-concurrent=1",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TodoExportTest {
+
+    private static final int CATEGORIES = 20;
+    private static final int TODOS = 25_000;
+    private static final long USER_ID = 30_000_000;
+    private static final String USERNAME = "export-large";
+
+    private static final Pattern ID = Pattern.compile("\"data\":\\{\"id\":(\\d+)");
+    private static final Pattern RANKING = Pattern.compile("\"ranking\":(\\d+)");
+    private static final Pattern DONE = Pattern.compile("\"done\":(true|false)");
+    private static final Pattern CATEGORY_ID = Pattern.compile("\"categoryId\":(\\d+)");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private TodoExportService exportService;
+
+    private String authorization;
+
+    // Every other todo done, spread over the categories, in rank order within each group
+    @BeforeAll
+    void seed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)",
+                USER_ID, USERNAME, USERNAME + "@todolist.local", now, now, now);
+        List<Object[]> categoryRows = new ArrayList<>();
+        for (int c = 0; c < CATEGORIES; c++) {
+            categoryRows.add(new Object[]{USER_ID + c, String.format("Category %02d", c), USER_ID, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryRows);
+        List<Object[]> todoRows = new ArrayList<>();
+        for (int t = 0; t < TODOS; t++) {
+            todoRows.add(new Object[]{USER_ID + CATEGORIES + t, "Todo " + t, (t / CATEGORIES + 1L) << 20, t % 2 == 1,
+                    USER_ID + t % CATEGORIES, USER_ID, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", todoRows);
+        authorization = "Bearer " + jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser(USERNAME));
+    }
+
+    @Test
+    void exportsEveryTodoOnceInRankGroups() throws Exception {
+        String[] lines = export().getContentAsString().split("\n");
+
+        assertEquals(CATEGORIES + TODOS, lines.length, "lines of the export");
+        Set<Long> ids = new HashSet<>();
+        String group = null;
+        int expectedRanking = 0;
+        for (int i = CATEGORIES; i < lines.length; i++) {
+            assertTrue(lines[i].startsWith("{\"type\":\"todo\""), "not a todo: " + lines[i]);
+            assertTrue(ids.add(Long.parseLong(field(ID, lines[i]))), "written twice: " + lines[i]);
+            String todoGroup = field(CATEGORY_ID, lines[i]) + "/" + field(DONE, lines[i]);
+            expectedRanking = todoGroup.equals(group) ? expectedRanking + 1 : 1;
+            group = todoGroup;
+            assertEquals(expectedRanking, Integer.parseInt(field(RANKING, lines[i])), "ranking of " + lines[i]);
+        }
+        assertEquals(TODOS, ids.size());
+    }
+
+    @Test
+    void answersAnExportBeyondTheLimitWith503() throws Exception {
+        // Holds the only permit from the moment it is created until its body has run
+        StreamingResponseBody running = exportAs(USERNAME);
+
+        MvcResult busy = mockMvc.perform(get("/api/todos/export").header(HttpHeaders.AUTHORIZATION, authorization))
+                .andReturn();
+        assertFalse(busy.getRequest().isAsyncStarted(), "the busy export started streaming");
+        assertEquals(503, busy.getResponse().getStatus());
+        assertNotNull(busy.getResponse().getHeader(HttpHeaders.RETRY_AFTER), "no Retry-After");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        running.writeTo(output);
+        assertTrue(output.size() > 0, "the running export wrote nothing");
+        assertEquals(200, export().getStatus(), "the permit was not returned");
+    }
+
+    private static String field(Pattern field, String line) {
+        Matcher matcher = field.matcher(line);
+        assertTrue(matcher.find(), field.pattern() + " not in " + line);
+        return matcher.group(1);
+    }
+
+    private MockHttpServletResponse export() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/todos/export").header(HttpHeaders.AUTHORIZATION, authorization))
+                .andReturn();
+        assertTrue(started.getRequest().isAsyncStarted(), "the export did not stream, status "
+                + started.getResponse().getStatus());
+        return mockMvc.perform(asyncDispatch(started)).andReturn().getResponse();
+    }
+
+    private StreamingResponseBody exportAs(String username) {
+        UserPrincipal principal = userDetailsService.loadAuthenticatedUser(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        try {
+            return exportService.exportCurrentUser();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
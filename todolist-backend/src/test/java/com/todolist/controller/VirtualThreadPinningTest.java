@@ -0,0 +1,242 @@
+package com.todolist.controller;
+
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serves requests on virtual threads, drives the REST API and the event stream from concurrent
+ * clients over HTTP and records jdk.VirtualThreadPinned with JFR. Each pinning is attributed to the
+ * first frame below the JDK on its stack; fails when any is outside {@link #ALLOWED}, when a
+ * request is not answered with 2xx, or when the recording misses a pinning the test causes itself.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:pinning;DB_CLOSE_DELAY=-1",
+        "spring.threads.virtual.enabled=true",
+        // Every client exports, so none is turned away by the export limit
+        "app.export.max-concurrent=20",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class VirtualThreadPinningTest {
+
+    // The in-memory H2 database synchronizes on its session; production runs on MySQL Connector/J, which does not
+    private static final List<String> ALLOWED = List.of("org.h2.");
+    private static final List<String> JDK = List.of("java.", "javax.", "jdk.", "sun.", "com.sun.crypto.");
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private static final String[] CATEGORY_NAMES = {"Personal Goals", "Health", "Errands"};
+    private static final int CLIENTS = 20;
+    private static final int ITERATIONS = 10;
+    private static final int STREAMS = 5;
+    private static final int TODOS_PER_CATEGORY = 10;
+    private static final long FIRST_ID = 50_000_000;
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    private final List<String> tokens = new ArrayList<>();
+
+    // CLIENTS users, each with open todos in every category
+    @BeforeAll
+    void seed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> categoryRows = new ArrayList<>();
+        List<Object[]> todoRows = new ArrayList<>();
+        for (int u = 0; u < CLIENTS; u++) {
+            long userId = FIRST_ID + u * 1000L;
+            String username = "pinning-" + u;
+            jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                            + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)",
+                    userId, username, username + "@todolist.local", now, now, now);
+            for (int c = 0; c < CATEGORY_NAMES.length; c++) {
+                long categoryId = userId + c + 1;
+                categoryRows.add(new Object[]{categoryId, CATEGORY_NAMES[c], userId, now, now, now});
+                for (int t = 0; t < TODOS_PER_CATEGORY; t++) {
+                    todoRows.add(new Object[]{userId + 100 + c * TODOS_PER_CATEGORY + t, "Todo " + t, (t + 1L) << 20,
+                            categoryId, userId, now, now, now});
+                }
+            }
+            tokens.add(jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser(username)));
+        }
+        jdbc.batchUpdate("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryRows);
+        jdbc.batchUpdate("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, FALSE, ?, ?, ?, ?, ?)", todoRows);
+    }
+
+    @Test
+    void pinsNoVirtualThreadOutsideTheTestDatabase() throws Exception {
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        Map<String, Integer> failedRequests = new ConcurrentHashMap<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+            pinOnce();
+            drive(failedRequests);
+            // Delivers the events still buffered
+            recording.stop();
+        }
+
+        Map<String, Integer> failures = new TreeMap<>();
+        StringBuilder stacks = new StringBuilder();
+        int own = 0;
+        for (RecordedEvent event : pinned) {
+            String culprit = culprit(event);
+            if (culprit.startsWith(getClass().getName())) {
+                own++;
+            } else if (ALLOWED.stream().noneMatch(culprit::startsWith) && failures.merge(culprit, 1, Integer::sum) == 1) {
+                stacks.append("\n").append(culprit).append("\n").append(event.getStackTrace());
+            }
+        }
+        assertTrue(own > 0, "the recording missed the pinning of the test itself");
+        assertTrue(failedRequests.isEmpty(), "requests not answered with 2xx: " + failedRequests);
+        assertTrue(failures.isEmpty(), "virtual threads pinned at " + failures + stacks);
+    }
+
+    // Sleeps holding a monitor on a virtual thread, which the recording must report
+    private static void pinOnce() throws InterruptedException {
+        Object monitor = new Object();
+        Thread.ofVirtual().start(() -> {
+            synchronized (monitor) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+    }
+
+    private void drive(Map<String, Integer> failedRequests) throws Exception {
+        List<HttpResponse<InputStream>> streams = new ArrayList<>();
+        for (int i = 0; i < STREAMS; i++) {
+            streams.add(HTTP.send(request("/api/events", tokens.get(i)).GET().build(),
+                    HttpResponse.BodyHandlers.ofInputStream()));
+        }
+        // Consumed in the background, so change events are written while the clients run
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        for (HttpResponse<InputStream> stream : streams) {
+            readers.execute(() -> {
+                try (InputStream body = stream.body()) {
+                    body.transferTo(OutputStream.nullOutputStream());
+                } catch (IOException e) {
+                    // closed at the end of the run
+                }
+            });
+        }
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                String token = tokens.get(i);
+                String category = CATEGORY_NAMES[i % CATEGORY_NAMES.length];
+                clients.execute(() -> {
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        call("GET", "/api/todos", null, token, failedRequests);
+                        call("GET", "/api/categories", null, token, failedRequests);
+                        String created = call("POST", "/api/todos",
+                                "{\"title\":\"Pinning\",\"ranking\":1,\"categoryName\":\"" + category + "\"}", token, failedRequests);
+                        Matcher id = ID.matcher(created);
+                        if (id.find()) {
+                            call("PATCH", "/api/todos/" + id.group(1) + "/toggle", null, token, failedRequests);
+                            call("DELETE", "/api/todos/" + id.group(1), null, token, failedRequests);
+                        }
+                        call("GET", "/api/todos/changes", null, token, failedRequests);
+                        call("GET", "/api/todos/export", null, token, failedRequests);
+                    }
+                });
+            }
+        }
+        readers.shutdownNow();
+    }
+
+    // The body, counting the requests that were not answered with 2xx by method, path and status
+    private String call(String method, String path, String json, String token, Map<String, Integer> failedRequests) {
+        HttpRequest.BodyPublisher body = json != null
+                ? HttpRequest.BodyPublishers.ofString(json)
+                : HttpRequest.BodyPublishers.noBody();
+        try {
+            HttpResponse<String> response = HTTP.send(request(path, token)
+                    .header("Content-Type", "application/json").method(method, body).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                failedRequests.merge(method + " " + path.replaceAll("\\d+", "{id}") + " " + response.statusCode(),
+                        1, Integer::sum);
+            }
+            return response.body();
+        } catch (IOException e) {
+            failedRequests.merge(method + " " + path + " " + e, 1, Integer::sum);
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private static String culprit(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (JDK.stream().noneMatch(type::startsWith)) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return "jdk";
+    }
+}
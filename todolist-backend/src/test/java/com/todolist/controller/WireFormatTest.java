@@ -0,0 +1,245 @@
+package com.todolist.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoDto;
+import com.todolist.repository.RecordingStatementInspector;
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import com.todolist.security.UserPrincipal;
+import com.todolist.service.TodoService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lists the todos and categories of a seeded user over HTTP as JSON and CBOR, whole and narrowed with
+ * ?fields=, with and without gzip. Fails when a narrowed listing holds other properties or other
+ * todos than the whole one, also page by page, when its SQL reads the columns left out, when an
+ * unknown field is not answered with 400, when CBOR or gzip do not decode to the JSON listing, when a
+ * small response is compressed, or when a listing does not vary by Accept or answer its ETag with 304.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:wire-format;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "app.rate-limit.enabled=false",
+        // Every listing is read from the database, so its SQL can be recorded
+        "app.listing-cache.enabled=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.todolist.repository.RecordingStatementInspector"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class WireFormatTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+    private static final String NARROW = "id,title,done";
+    private static final String[] CATEGORY_NAMES = {"Wire Errands", "Wire Health", "Wire Learning"};
+    private static final int TODOS_PER_CATEGORY = 100;
+    private static final long USER_ID = 95_000_000;
+    private static final String USERNAME = "wire-format";
+
+    private static final HttpClient HTTP = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    private String token;
+
+    // A fifth of the todos of each category done
+    @BeforeAll
+    void seed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)",
+                USER_ID, USERNAME, USERNAME + "@todolist.local", now, now, now);
+        List<Object[]> todos = new ArrayList<>();
+        for (int c = 0; c < CATEGORY_NAMES.length; c++) {
+            long categoryId = USER_ID + c + 1;
+            jdbc.update("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                    + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryId, CATEGORY_NAMES[c], USER_ID, now, now, now);
+            for (int t = 0; t < TODOS_PER_CATEGORY; t++) {
+                todos.add(new Object[]{USER_ID + 100 + c * TODOS_PER_CATEGORY + t, "Todo " + t,
+                        "Description of todo " + t, (t + 1L) << 20, t % 5 == 0, categoryId, USER_ID, now, now, now});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO todos (id, title, description, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", todos);
+        token = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser(USERNAME));
+    }
+
+    @Test
+    void narrowsListingsToTheRequestedFields() throws Exception {
+        assertNarrowed("/api/todos", NARROW);
+        assertNarrowed("/api/todos/category/Wire%20Health", "id,ranking");
+        assertNarrowed("/api/categories", "id,name");
+        assertNarrowed("/api/categories", "name,todoCount");
+        assertTrue(send("/api/todos?fields=" + NARROW).body().length * 2 < send("/api/todos").body().length,
+                "?fields=" + NARROW + " is not half the size of the whole listing");
+    }
+
+    @Test
+    void rejectsAnUnknownField() throws Exception {
+        assertEquals(400, send("/api/todos?fields=id,secret").statusCode());
+    }
+
+    @Test
+    void pagesANarrowedListingThroughTheSameTodos() throws Exception {
+        List<String> expected = new ArrayList<>();
+        json(send("/api/todos")).forEach(todo -> expected.add(todo.get("id") + "/" + todo.get("ranking")));
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = json(send("/api/todos?size=37&fields=id,ranking" + (cursor != null ? "&cursor=" + cursor : "")));
+            page.get("items").forEach(todo -> paged.add(todo.get("id") + "/" + todo.get("ranking")));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null && paged.size() <= expected.size());
+        assertEquals(expected, paged);
+    }
+
+    // The requested columns, and the id, done state and category id the listing always needs
+    @Test
+    void selectsOnlyTheRequestedColumns() {
+        UserPrincipal principal = userDetailsService.loadAuthenticatedUser(USERNAME);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        try {
+            RecordingStatementInspector.drain();
+            todoService.getAllTodos(FieldSet.parse(NARROW, TodoDto.FIELDS));
+            String narrowed = todoQuery(RecordingStatementInspector.drain());
+            todoService.getAllTodos(FieldSet.ALL);
+            String full = todoQuery(RecordingStatementInspector.drain());
+
+            String select = narrowed.substring(0, narrowed.indexOf(" from "));
+            assertTrue(full.contains("description"), full);
+            assertTrue(select.contains("title"), select);
+            assertFalse(select.contains("description") || select.contains("date_created"), select);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void answersCborWithTheContentOfTheJson() throws Exception {
+        for (String path : List.of("/api/todos", "/api/todos?fields=" + NARROW, "/api/categories")) {
+            HttpResponse<byte[]> cbor = send(path, "Accept", "application/cbor");
+            assertEquals(200, cbor.statusCode(), path);
+            assertTrue(cbor.headers().firstValue("Content-Type").orElse("").startsWith("application/cbor"),
+                    path + " answered " + cbor.headers().firstValue("Content-Type").orElse("no Content-Type"));
+            assertEquals(json(send(path)).toString(), CBOR.readTree(cbor.body()).toString(), path);
+        }
+    }
+
+    @Test
+    void compressesResponsesAboveTheMinimumSize() throws Exception {
+        for (String accept : List.of("application/json", "application/cbor")) {
+            HttpResponse<byte[]> plain = send("/api/todos", "Accept", accept);
+            HttpResponse<byte[]> gzip = send("/api/todos", "Accept", accept, "Accept-Encoding", "gzip");
+            assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null), accept);
+            assertTrue(gzip.body().length < plain.body().length, accept + " compressed to " + gzip.body().length
+                    + " of " + plain.body().length + " bytes");
+            assertTrue(Arrays.equals(plain.body(), gunzip(gzip.body())), accept + " decompressed differs");
+        }
+        HttpResponse<byte[]> small = send("/api/categories?fields=id", "Accept-Encoding", "gzip");
+        assertTrue(small.headers().firstValue("Content-Encoding").isEmpty(),
+                "a " + small.body().length + " byte response was compressed");
+    }
+
+    @Test
+    void answersItsOwnETagWith304AndVariesByAccept() throws Exception {
+        for (String[] request : List.of(new String[]{"/api/todos?fields=" + NARROW, "application/json"},
+                new String[]{"/api/todos", "application/cbor"})) {
+            String label = request[0] + " as " + request[1];
+            HttpResponse<byte[]> first = send(request[0], "Accept", request[1], "Accept-Encoding", "gzip");
+            String eTag = first.headers().firstValue("ETag").orElse(null);
+            assertNotNull(eTag, label + " has no ETag");
+            assertTrue(first.headers().allValues("Vary").stream()
+                    .flatMap(vary -> Arrays.stream(vary.split(",")))
+                    .anyMatch(name -> name.trim().equalsIgnoreCase("Accept")), label + " does not vary by Accept");
+            assertEquals(304, send(request[0], "Accept", request[1], "If-None-Match", eTag).statusCode(), label);
+        }
+    }
+
+    // Same todos in the same order, with only the given properties
+    private void assertNarrowed(String path, String fields) throws Exception {
+        JsonNode full = json(send(path));
+        JsonNode narrowed = json(send(path + "?fields=" + fields));
+        Set<String> names = new TreeSet<>(List.of(fields.split(",")));
+        assertEquals(full.size(), narrowed.size(), path + "?fields=" + fields + " rows");
+        for (int i = 0; i < full.size(); i++) {
+            Set<String> properties = new TreeSet<>();
+            narrowed.get(i).fieldNames().forEachRemaining(properties::add);
+            assertEquals(names, properties, path + "?fields=" + fields + " row " + i);
+            for (String name : names) {
+                assertEquals(full.get(i).get(name), narrowed.get(i).get(name), path + "?fields=" + fields + " row " + i);
+            }
+        }
+    }
+
+    private static String todoQuery(List<String> statements) {
+        return statements.stream().filter(sql -> sql.contains("from todos")).findFirst()
+                .orElseThrow(() -> new AssertionError("no query of todos in " + statements));
+    }
+
+    private HttpResponse<byte[]> send(String path, String... headers) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token).GET();
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static JsonNode json(HttpResponse<byte[]> response) throws IOException {
+        assertEquals(200, response.statusCode(), response.uri().toString());
+        return JSON.readTree(response.body());
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
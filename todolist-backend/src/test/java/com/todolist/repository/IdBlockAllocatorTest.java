@@ -0,0 +1,102 @@
+package com.todolist.repository;
+
+import com.todolist.entity.Category;
+import com.todolist.entity.Todo;
+import com.todolist.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Inserts more todos than one block of ids holds on a pool of a single connection, which the inserting
+ * transaction keeps for itself, and reserves blocks from racing threads. Fails when an insert waits for
+ * a second connection of the pool or an id is handed out twice.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:id-blocks;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=1000",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+class IdBlockAllocatorTest {
+
+    private static final int TODOS = 120;
+    private static final int THREADS = 8;
+    private static final int BLOCKS = 50;
+    private static final int BLOCK_SIZE = 10;
+
+    @Autowired
+    private TodoRepository todos;
+
+    @Autowired
+    private CategoryRepository categories;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private IdBlockAllocator allocator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void insertsWhileTheTransactionHoldsTheOnlyConnection() {
+        List<Long> ids = new TransactionTemplate(transactionManager).execute(status -> {
+            User user = users.save(new User("id-blocks", "id-blocks@todolist.local", "not-a-hash"));
+            Category category = new Category();
+            category.setName("Blocks");
+            category.setUser(user);
+            categories.save(category);
+            List<Todo> created = new ArrayList<>();
+            for (int i = 0; i < TODOS; i++) {
+                Todo todo = new Todo();
+                todo.setTitle("Todo " + i);
+                todo.setRankKey((i + 1L) << 20);
+                todo.setCategory(category);
+                todo.setUser(user);
+                created.add(todo);
+            }
+            return todos.saveAll(created).stream().map(Todo::getId).toList();
+        });
+        assertEquals(TODOS, new HashSet<>(ids).size(), "ids handed out twice: " + ids);
+    }
+
+    @Test
+    void racingThreadsGetBlocksOfTheirOwn() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> threads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                threads.add(executor.submit(() -> {
+                    for (int b = 0; b < BLOCKS; b++) {
+                        long last = allocator.allocate("id-blocks-test", BLOCK_SIZE);
+                        for (long id = last - BLOCK_SIZE + 1; id <= last; id++) {
+                            ids.add(id);
+                        }
+                    }
+                }));
+            }
+        }
+        // Rethrows what failed a thread
+        for (Future<?> thread : threads) {
+            thread.get();
+        }
+        assertEquals(THREADS * BLOCKS * BLOCK_SIZE, ids.size(), "blocks overlap");
+    }
+}
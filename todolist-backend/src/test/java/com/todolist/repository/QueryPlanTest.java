@@ -0,0 +1,213 @@
+package com.todolist.repository;
+
+import com.todolist.dto.FieldSet;
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Category;
+import com.todolist.entity.Todo;
+import com.todolist.entity.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs every repository query against a seeded H2 database built from the Liquibase changelog,
+ * asks H2 to EXPLAIN the SQL Hibernate generated for it and fails when a plan contains a full table
+ * scan. New repository queries belong in {@link #queries}, together with their index changeset.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.todolist.repository.RecordingStatementInspector"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final String[] CATEGORY_NAMES = {"Personal Goals", "Professional Goals", "Health", "Learning", "Errands"};
+    private static final int USERS = 200;
+    private static final int TODOS_PER_CATEGORY = 20;
+    private static final long RANK_GAP = 1L << 20;
+    private static final long FIRST_ID = 10_000_000;
+
+    @Autowired
+    private TodoRepository todos;
+
+    @Autowired
+    private CategoryRepository categories;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private ListingInvalidationRepository invalidations;
+
+    @Autowired
+    private TombstoneRepository tombstones;
+
+    @Autowired
+    private EmailOutboxRepository outbox;
+
+    @Autowired
+    private JobLeaseRepository leases;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    // Enough rows that H2 picks an index wherever one fits
+    @BeforeAll
+    void seed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> userRows = new ArrayList<>();
+        List<Object[]> categoryRows = new ArrayList<>();
+        List<Object[]> todoRows = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            long userId = FIRST_ID + u;
+            userRows.add(new Object[]{userId, username(u), username(u) + "@todolist.local", now, now, now});
+            for (int c = 0; c < CATEGORY_NAMES.length; c++) {
+                long categoryId = userId * CATEGORY_NAMES.length + c;
+                categoryRows.add(new Object[]{categoryId, CATEGORY_NAMES[c], userId, now, now, now});
+                for (int t = 0; t < TODOS_PER_CATEGORY; t++) {
+                    boolean done = t % 5 == 4;
+                    todoRows.add(new Object[]{categoryId * TODOS_PER_CATEGORY + t, "Todo " + t, "Description of todo " + t,
+                            (t + 1) * RANK_GAP, done, categoryId, userId, now, now, now});
+                }
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)", userRows);
+        jdbc.batchUpdate("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categoryRows);
+        jdbc.batchUpdate("INSERT INTO todos (id, title, description, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", todoRows);
+        jdbc.execute("ANALYZE");
+    }
+
+    private static String username(int index) {
+        return "plan-user-" + index;
+    }
+
+    private Map<String, Runnable> queries() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        String username = username(0);
+        User user = users.findByUsername(username).orElseThrow();
+        Category category = categories.findByUserAndName(user, CATEGORY_NAMES[0]).orElseThrow();
+        Todo todo = todos.findListingByUserAndCategory(user, category).stream()
+                .findFirst()
+                .flatMap(dto -> todos.findById(dto.getId()))
+                .orElseThrow();
+        RecordingStatementInspector.drain();
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        // Locking reads need a transaction
+        queries.put("TodoRepository.lockRankKeys", () -> transaction.executeWithoutResult(status ->
+                todos.lockRankKeys(category.getId(), false, PageRequest.of(0, 10))));
+        queries.put("TodoRepository.lockLastRankKeys", () -> transaction.executeWithoutResult(status ->
+                todos.lockLastRankKeys(category.getId(), false, PageRequest.of(0, 2))));
+        queries.put("TodoRepository.lockCategoryRankKeys", () -> transaction.executeWithoutResult(status ->
+                todos.lockCategoryRankKeys(List.of(category.getId()))));
+        queries.put("TodoRepository.countRankedBefore", () -> todos.countRankedBefore(category, false, todo.getRankKey(), todo.getId()));
+        queries.put("TodoRepository.findRankGroup", () -> transaction.executeWithoutResult(status ->
+                todos.findRankGroup(category.getId(), false)));
+        queries.put("TodoRepository.findRankGroups", () -> transaction.executeWithoutResult(status ->
+                todos.findRankGroups(List.of(category.getId()))));
+        queries.put("TodoRepository.countByUserGroupedByCategory", () -> todos.countByUserGroupedByCategory(user));
+        queries.put("TodoRepository.countByCategory", () -> todos.countByCategory(category));
+        queries.put("TodoRepository.findListingByUser", () -> todos.findListingByUser(user));
+        queries.put("TodoRepository.findListingByUserAndCategory", () -> todos.findListingByUserAndCategory(user, category));
+        queries.put("TodoRepository.findListingByUserAndCategoryIds", () -> todos.findListingByUserAndCategoryIds(user, List.of(category.getId())));
+        queries.put("TodoRepository.streamListingByUser", () -> transaction.executeWithoutResult(status -> {
+            try (var stream = todos.streamListingByUser(user)) {
+                stream.findFirst();
+            }
+        }));
+        queries.put("TodoRepository.findListingPage", () -> todos.findListingPage(category.getId(), false, todo.getRankKey(), todo.getId(), PageRequest.of(0, 50)));
+        FieldSet fields = FieldSet.parse("id,title,done", TodoDto.FIELDS);
+        queries.put("TodoRepository.findListing(fields)", () -> todos.findListing(user, null, fields));
+        queries.put("TodoRepository.findListing(category, fields)", () -> todos.findListing(user, category, fields));
+        queries.put("TodoRepository.findListingPage(fields)", () -> todos.findListingPage(category.getId(), false, todo.getRankKey(), todo.getId(), 50, fields));
+        queries.put("TodoRepository.findCategoryIdsModifiedSince", () -> todos.findCategoryIdsModifiedSince(user, LocalDateTime.now().minusMinutes(1)));
+        queries.put("TodoRepository.findRankKeyById", () -> todos.findRankKeyById(todo.getId()));
+        queries.put("TodoRepository.findRankKeyInGroup", () -> todos.findRankKeyInGroup(todo.getId(), category.getId(), false));
+        queries.put("TodoRepository.findTextByUser", () -> todos.findTextByUser(user));
+        queries.put("TodoRepository.findListingByUserAndIdIn", () -> todos.findListingByUserAndIdIn(user, List.of(todo.getId())));
+        queries.put("TodoRepository.findByIdAndUser", () -> todos.findByIdAndUser(todo.getId(), user));
+        queries.put("TodoRepository.findByUserAndIdIn", () -> todos.findByUserAndIdIn(user, List.of(todo.getId())));
+        queries.put("CategoryRepository.findByUserAndName", () -> categories.findByUserAndName(user, category.getName()));
+        queries.put("CategoryRepository.existsByUserAndName", () -> categories.existsByUserAndName(user, category.getName()));
+        queries.put("CategoryRepository.findByUserOrderByNameAsc", () -> categories.findByUserOrderByNameAsc(user));
+        queries.put("CategoryRepository.findFirstByUserAndNameGreaterThanOrderByNameAsc",
+                () -> categories.findFirstByUserAndNameGreaterThanOrderByNameAsc(user, category.getName()));
+        queries.put("CategoryRepository.findByUserOrderByCreated", () -> categories.findByUserOrderByCreated(user));
+        queries.put("CategoryRepository.findByIdAndUser", () -> categories.findByIdAndUser(category.getId(), user));
+        queries.put("CategoryRepository.existsByUserAndAuditDateModifiedGreaterThanEqual",
+                () -> categories.existsByUserAndAuditDateModifiedGreaterThanEqual(user, LocalDateTime.now().minusMinutes(1)));
+        queries.put("UserRepository.findByUsername", () -> users.findByUsername(username));
+        queries.put("UserRepository.findByEmail", () -> users.findByEmail(user.getEmail()));
+        queries.put("UserRepository.existsByUsername", () -> users.existsByUsername(username));
+        queries.put("UserRepository.existsByEmail", () -> users.existsByEmail(user.getEmail()));
+        queries.put("UserRepository.findByEmailValidationToken", () -> users.findByEmailValidationToken("token"));
+        queries.put("UserRepository.findExpiredUnvalidatedUsers", () -> users.findExpiredUnvalidatedUsers(LocalDateTime.now(), PageRequest.of(0, 500)));
+        queries.put("UserRepository.deleteExpiredUnvalidatedUsers", () -> users.deleteExpiredUnvalidatedUsers(List.of(-1L), LocalDateTime.now()));
+        queries.put("ListingInvalidationRepository.findCreatedAfter", () -> invalidations.findCreatedAfter(LocalDateTime.now().minusSeconds(10)));
+        queries.put("ListingInvalidationRepository.deleteCreatedBefore", () -> transaction.executeWithoutResult(
+                status -> invalidations.deleteCreatedBefore(LocalDateTime.now().minusHours(1))));
+        queries.put("TombstoneRepository.findDeletedSince", () -> tombstones.findDeletedSince(user.getId(), LocalDateTime.now().minusMinutes(1)));
+        queries.put("TombstoneRepository.deleteDeletedBefore", () -> transaction.executeWithoutResult(
+                status -> tombstones.deleteDeletedBefore(LocalDateTime.now().minusDays(30))));
+        queries.put("EmailOutboxRepository.findDueIds", () -> outbox.findDueIds(LocalDateTime.now(), PageRequest.of(0, 50)));
+        queries.put("EmailOutboxRepository.claim", () -> outbox.claim(List.of(1L), "claim", LocalDateTime.now(), LocalDateTime.now()));
+        queries.put("EmailOutboxRepository.findByClaim", () -> outbox.findByClaim("claim"));
+        queries.put("EmailOutboxRepository.markSent", () -> outbox.markSent(List.of(1L), LocalDateTime.now()));
+        queries.put("EmailOutboxRepository.deleteSentBefore", () -> outbox.deleteSentBefore(LocalDateTime.now().minusDays(7)));
+        queries.put("JobLeaseRepository.acquire", () -> leases.acquire("job", "owner", LocalDateTime.now(), LocalDateTime.now()));
+        queries.put("JobLeaseRepository.release", () -> leases.release("job", "owner", LocalDateTime.now()));
+        return queries;
+    }
+
+    @TestFactory
+    Stream<DynamicTest> usesAnIndex() {
+        return queries().entrySet().stream().map(query -> DynamicTest.dynamicTest(query.getKey(), () -> {
+            query.getValue().run();
+            List<String> statements = RecordingStatementInspector.drain();
+            assertFalse(statements.isEmpty(), "sent no SQL");
+            for (String sql : statements) {
+                String plan = explain(sql);
+                assertFalse(plan.contains(".tableScan"), "scans a whole table:\n" + plan);
+            }
+        }));
+    }
+
+    private String explain(String sql) {
+        return jdbc.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package com.todolist.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the SQL Hibernate sends on the current thread, so a test can look at the statements
+ * behind a repository call.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> RECORDED = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        RECORDED.get().add(sql);
+        return sql;
+    }
+
+    public static List<String> drain() {
+        List<String> statements = List.copyOf(RECORDED.get());
+        RECORDED.get().clear();
+        return statements;
+    }
+}
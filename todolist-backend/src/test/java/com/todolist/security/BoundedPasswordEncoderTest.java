@@ -0,0 +1,80 @@
+package com.todolist.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends bursts of hashing to an encoder with a single thread. A burst that fits the maximum wait must be
+ * hashed completely; past it, the requests whose turn did not come must fail with
+ * {@link BoundedPasswordEncoder.PasswordHashingBusyException} once they waited that long, not before.
+ */
+class BoundedPasswordEncoderTest {
+
+    private static final int BURST = 8;
+
+    @Test
+    void hashesABurstThatFitsTheWait() throws Exception {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(4, 1, BURST, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        try {
+            List<Object> results = burst(encoder);
+            assertTrue(results.stream().allMatch(result -> result instanceof String hash && encoder.matches("secret", hash)),
+                    "some of the burst was not hashed: " + results);
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void shedsTheRequestsWhoseTurnDidNotCome() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Duration maxWait = Duration.ofMillis(100);
+        // Strength 14 takes far longer than the wait for each hash
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(14, 1, BURST, maxWait, meterRegistry);
+        try {
+            long start = System.nanoTime();
+            List<Object> results = burst(encoder);
+            long shedAfter = System.nanoTime() - start;
+
+            long hashed = results.stream().filter(String.class::isInstance).count();
+            long shed = results.stream().filter(BoundedPasswordEncoder.PasswordHashingBusyException.class::isInstance).count();
+            assertEquals(BURST, hashed + shed, "unexpected results: " + results);
+            assertTrue(hashed >= 1, "nothing was hashed");
+            assertTrue(shed >= BURST - 2, "only " + shed + " requests were shed");
+            assertEquals((double) shed, meterRegistry.get("password.hashing.rejected").counter().count());
+            assertTrue(shedAfter >= maxWait.toNanos(), "requests were shed before the maximum wait");
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    // The hash, or the exception, of each request of a burst sent at once
+    private static List<Object> burst(BoundedPasswordEncoder encoder) throws Exception {
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService clients = Executors.newFixedThreadPool(BURST)) {
+            for (int i = 0; i < BURST; i++) {
+                futures.add(clients.submit(() -> encoder.encode("secret")));
+            }
+        }
+        List<Object> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            try {
+                results.add(future.get(0, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                results.add(e.getCause());
+            }
+        }
+        return results;
+    }
+}
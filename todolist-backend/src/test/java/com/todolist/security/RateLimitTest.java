@@ -0,0 +1,160 @@
+package com.todolist.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends logins and API requests over HTTP with rate limiting on, the clients told apart by the
+ * X-Forwarded-For header a proxy on the loopback address would send. Fails when a burst of logins
+ * from one client is let through past the login capacity, when a 429 lacks Retry-After or the error
+ * body, when a password is verified for a login answered 429, when clients behind the same proxy
+ * share a login bucket, or when one user's empty API bucket turns another user away.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:rate-limit;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "app.password.bcrypt-strength=4",
+        "app.rate-limit.enabled=true",
+        "app.rate-limit.login.capacity=10",
+        "app.rate-limit.login.refill=0.001",
+        "app.rate-limit.api.capacity=50",
+        "app.rate-limit.api.refill=0.001"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RateLimitTest {
+
+    private static final int LOGIN_CAPACITY = 10;
+    private static final int API_CAPACITY = 50;
+    private static final long FIRST_ID = 90_000_000;
+    private static final String PASSWORD = "rate-limit-password";
+
+    private static final HttpClient HTTP = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @BeforeAll
+    void seedUsers() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String encoded = passwordEncoder.encode(PASSWORD);
+        for (int i = 0; i < 2; i++) {
+            jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                            + "audit_date_modified, email_validated) VALUES (?, ?, ?, ?, ?, ?, ?, TRUE)",
+                    FIRST_ID + i, "rate-limit-" + i, "rate-limit-" + i + "@todolist.local", encoded, now, now, now);
+        }
+    }
+
+    @Test
+    void answersABurstOfLoginsPastTheCapacityWith429() throws Exception {
+        double verifiedBefore = meterRegistry.get("password.hashing").tag("operation", "matches").timer().count();
+        double rejectedBefore = meterRegistry.get("rate.limit.rejected").tag("route", "login").counter().count();
+
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        try (ExecutorService clients = Executors.newFixedThreadPool(8)) {
+            List<Future<HttpResponse<String>>> sent = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                sent.add(clients.submit(() -> login("203.0.113.1")));
+            }
+            for (Future<HttpResponse<String>> response : sent) {
+                responses.add(response.get());
+            }
+        }
+
+        List<HttpResponse<String>> limited = responses.stream().filter(response -> response.statusCode() == 429).toList();
+        assertEquals(LOGIN_CAPACITY, responses.size() - limited.size(), "logins let through");
+        for (HttpResponse<String> response : limited) {
+            long retryAfter = Long.parseLong(response.headers().firstValue("Retry-After").orElse("0"));
+            assertTrue(retryAfter >= 1, "Retry-After of " + retryAfter);
+            assertTrue(response.body().contains("\"status\":429"), response.body());
+        }
+        double verified = meterRegistry.get("password.hashing").tag("operation", "matches").timer().count() - verifiedBefore;
+        assertTrue(verified <= LOGIN_CAPACITY, verified + " passwords verified");
+        assertEquals(limited.size(), meterRegistry.get("rate.limit.rejected").tag("route", "login").counter().count()
+                - rejectedBefore, "rate.limit.rejected");
+    }
+
+    @Test
+    void keysLoginsOnTheClientAddressForwardedByTheProxy() throws Exception {
+        for (int i = 0; i < LOGIN_CAPACITY; i++) {
+            assertEquals(200, login("203.0.113.2").statusCode());
+        }
+        assertEquals(429, login("203.0.113.2").statusCode());
+        assertNotEquals(429, login("203.0.113.3").statusCode(), "a second client behind the proxy was limited");
+    }
+
+    @Test
+    void givesEachUserAnApiBucketOfTheirOwn() throws Exception {
+        String first = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser("rate-limit-0"));
+        String second = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser("rate-limit-1"));
+        int firstAllowed = 0;
+        for (int i = 0; i < API_CAPACITY * 2; i++) {
+            firstAllowed += categories(first) == 200 ? 1 : 0;
+        }
+        int secondAllowed = 0;
+        for (int i = 0; i < API_CAPACITY; i++) {
+            secondAllowed += categories(second) == 200 ? 1 : 0;
+        }
+        assertEquals(API_CAPACITY, firstAllowed, "requests of the first user answered");
+        assertEquals(API_CAPACITY, secondAllowed, "requests of the second user answered");
+    }
+
+    private HttpResponse<String> login(String client) throws IOException, InterruptedException {
+        return HTTP.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .header("X-Forwarded-For", client)
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"username\":\"rate-limit-0\",\"password\":\"" + PASSWORD + "\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Both users behind the same proxy client
+    private int categories(String token) throws IOException, InterruptedException {
+        return HTTP.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/categories"))
+                        .header("Authorization", "Bearer " + token)
+                        .header("X-Forwarded-For", "203.0.113.4")
+                        .GET().build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+}
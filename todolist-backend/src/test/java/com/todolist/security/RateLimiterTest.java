@@ -0,0 +1,77 @@
+package com.todolist.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Races threads for one bucket and fills limiters with many clients. Fails when the racing threads
+ * are granted more or fewer tokens than the bucket holds, when more buckets are kept than the
+ * maximum, or when idle buckets are not dropped.
+ */
+class RateLimiterTest {
+
+    private static final int THREADS = 8;
+
+    // Without a lock, racing threads still take each token once
+    @Test
+    void grantsRacingThreadsExactlyTheCapacity() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(100, Duration.ofMinutes(1));
+        RateLimiter.Limit limit = new RateLimiter.Limit(10_000, 0.001);
+        AtomicInteger granted = new AtomicInteger();
+        try (ExecutorService threads = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> racing = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                racing.add(threads.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        if (rateLimiter.tryAcquire("shared", limit) == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> thread : racing) {
+                thread.get();
+            }
+        }
+        assertEquals(limit.capacity(), granted.get());
+    }
+
+    @Test
+    void keepsAtMostTheMaximumOfBuckets() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(1000, Duration.ofMinutes(1));
+        RateLimiter.Limit limit = new RateLimiter.Limit(5, 1);
+        for (int i = 0; i < 100_000; i++) {
+            rateLimiter.tryAcquire("client-" + i, limit);
+        }
+        long held = settle(rateLimiter);
+        assertTrue(held <= 1000, held + " buckets held");
+    }
+
+    @Test
+    void dropsIdleBuckets() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(100_000, Duration.ofMillis(200));
+        RateLimiter.Limit limit = new RateLimiter.Limit(5, 1);
+        for (int i = 0; i < 10_000; i++) {
+            rateLimiter.tryAcquire("client-" + i, limit);
+        }
+        Thread.sleep(500);
+        rateLimiter.tryAcquire("late", limit);
+        assertEquals(1, settle(rateLimiter), "buckets left");
+    }
+
+    // Eviction runs in the background, so give it a moment
+    private static long settle(RateLimiter rateLimiter) throws InterruptedException {
+        Thread.sleep(500);
+        return rateLimiter.size();
+    }
+}
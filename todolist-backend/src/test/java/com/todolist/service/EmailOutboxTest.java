@@ -0,0 +1,208 @@
+package com.todolist.service;
+
+import com.todolist.entity.OutboxEmail;
+import com.todolist.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Signs up users against {@link SmtpStandIn} and sends their validation emails from two senders at
+ * once, as two instances would, while the mail server holds every message; then releases it and
+ * lets the senders retry until every email is sent or dead. Fails when a signup waits for the mail
+ * server, when the senders claim overlapping batches or both claim an email they found due at once,
+ * when an email is delivered twice, when a refused email is not retried or a permanently refused one
+ * is not marked DEAD after app.mail.outbox.max-attempts, or when the emails are not batched over
+ * shared connections.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "app.rate-limit.enabled=false",
+        "app.password.bcrypt-strength=4",
+        // The test runs the senders itself
+        "app.mail.outbox.poll-interval=3600000",
+        "app.mail.outbox.batch-size=10",
+        "app.mail.outbox.initial-backoff=1",
+        "app.mail.outbox.max-attempts=3",
+        "spring.mail.properties.mail.smtp.timeout=60000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EmailOutboxTest {
+
+    private static final int SIGNUPS = 40;
+    private static final int FLAKY = 5;
+    private static final int REJECTED = 5;
+    private static final int BATCH_SIZE = 10;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String DOMAIN = "@outbox.local";
+
+    private static final SmtpStandIn SMTP = new SmtpStandIn(20);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EmailOutboxService outbox;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private int lateSignupStatus;
+    private int claimedWhileHeld;
+    private int claimsWhileHeld;
+    private int connectionsWhileHeld;
+    // Status and attempts by recipient once every email is sent or dead
+    private final Map<String, String> statuses = new HashMap<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private final Map<String, String> errors = new HashMap<>();
+    private List<String> delivered;
+
+    @DynamicPropertySource
+    static void smtp(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", SMTP::port);
+    }
+
+    @BeforeAll
+    void sendTheOutbox() throws Exception {
+        for (int i = 0; i < SIGNUPS; i++) {
+            assertEquals(200, signUp(i < FLAKY ? "flaky" : i < FLAKY + REJECTED ? "reject" : "user", i));
+        }
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(outbox::sendDueEmails);
+        CompletableFuture<?> second = CompletableFuture.runAsync(outbox::sendDueEmails);
+        // Each sender waits in its first batch for the held server
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (SMTP.connections() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        connectionsWhileHeld = SMTP.connections();
+        claimedWhileHeld = count("SELECT COUNT(*) FROM email_outbox WHERE claim IS NOT NULL");
+        claimsWhileHeld = count("SELECT COUNT(DISTINCT claim) FROM email_outbox WHERE claim IS NOT NULL");
+        lateSignupStatus = CompletableFuture.supplyAsync(() -> signUp("late", 0)).get(30, TimeUnit.SECONDS);
+        SMTP.release();
+        CompletableFuture.allOf(first, second).get(60, TimeUnit.SECONDS);
+
+        // Retries come due after 1 s, 2 s and so on
+        deadline = System.currentTimeMillis() + 60_000;
+        while (count("SELECT COUNT(*) FROM email_outbox WHERE status = 'PENDING'") > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(250);
+            outbox.sendDueEmails();
+        }
+        for (Map<String, Object> row : jdbc.queryForList("SELECT recipient, status, attempts, last_error FROM email_outbox")) {
+            String recipient = (String) row.get("RECIPIENT");
+            if (recipient.endsWith(DOMAIN)) {
+                statuses.put(recipient, (String) row.get("STATUS"));
+                attempts.put(recipient, ((Number) row.get("ATTEMPTS")).intValue());
+                errors.put(recipient, (String) row.get("LAST_ERROR"));
+            }
+        }
+        delivered = SMTP.delivered().stream().filter(recipient -> recipient.endsWith(DOMAIN)).toList();
+    }
+
+    @AfterAll
+    void stopSmtp() throws Exception {
+        SMTP.close();
+    }
+
+    @Test
+    void signsUpWhileTheMailServerHoldsEveryMessage() {
+        assertEquals(200, lateSignupStatus);
+    }
+
+    @Test
+    void claimsABatchForEachSender() {
+        assertEquals(2, connectionsWhileHeld, "connections of the two senders");
+        assertEquals(2, claimsWhileHeld, "claims while both senders waited");
+        assertEquals(2 * BATCH_SIZE, claimedWhileHeld, "emails claimed while both senders waited");
+    }
+
+    @Test
+    void claimsAnEmailFoundDueByTwoSendersOnce() {
+        List<Long> ids = List.of(outboxRepository.save(new OutboxEmail("race" + DOMAIN, "Race", "Race")).getId());
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(1, outboxRepository.claim(ids, "first", now, now.plusMinutes(5)));
+        assertEquals(0, outboxRepository.claim(ids, "second", now, now.plusMinutes(5)));
+        assertEquals(List.of("first"), jdbc.queryForList("SELECT claim FROM email_outbox WHERE id = ?", String.class, ids.get(0)));
+    }
+
+    @Test
+    void deliversEveryEmailExactlyOnce() {
+        List<String> sent = statuses.entrySet().stream()
+                .filter(entry -> entry.getValue().equals("SENT")).map(Map.Entry::getKey).sorted().toList();
+        assertEquals(SIGNUPS + 1 - REJECTED, sent.size(), "sent emails: " + statuses);
+        assertEquals(delivered.size(), new HashSet<>(delivered).size(), "delivered twice: " + delivered);
+        assertEquals(sent, delivered.stream().sorted().toList());
+    }
+
+    @Test
+    void retriesAnEmailTheServerRefusedOnce() {
+        for (int i = 0; i < FLAKY; i++) {
+            String recipient = "flaky" + i + DOMAIN;
+            assertEquals("SENT", statuses.get(recipient), recipient);
+            assertEquals(2, attempts.get(recipient), "attempts for " + recipient);
+        }
+    }
+
+    @Test
+    void marksAnEmailDeadAfterTheLastAttempt() {
+        for (int i = FLAKY; i < FLAKY + REJECTED; i++) {
+            String recipient = "reject" + i + DOMAIN;
+            assertEquals("DEAD", statuses.get(recipient), recipient);
+            assertEquals(MAX_ATTEMPTS, attempts.get(recipient), "attempts for " + recipient);
+            assertNotNull(errors.get(recipient), "no error kept for " + recipient);
+        }
+    }
+
+    @Test
+    void sharesConnectionsBetweenEmails() {
+        assertTrue(SMTP.connections() * 2 <= delivered.size(),
+                SMTP.connections() + " SMTP connections for " + delivered.size() + " emails");
+    }
+
+    private int signUp(String mailbox, int index) {
+        String username = mailbox + index;
+        try {
+            return mockMvc.perform(post("/api/auth/signup").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"" + username + "\",\"email\":\"" + username + DOMAIN
+                                    + "\",\"password\":\"outbox-password\"}"))
+                    .andReturn().getResponse().getStatus();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int count(String sql) {
+        return jdbc.queryForObject(sql, Integer.class);
+    }
+}
@@ -0,0 +1,248 @@
+package com.todolist.service;
+
+import com.todolist.dto.TodoDto;
+import com.todolist.dto.TodoPageDto;
+import com.todolist.entity.Todo;
+import com.todolist.repository.TodoRepository;
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Places, toggles and reorders todos of seeded rank groups, each test in a category of its own, and
+ * pages through a group that is rebalanced between two pages. Fails when a todo does not end up at the
+ * requested position, when a todo that did not move gets a new key, when a group out of room between
+ * two keys is not renumbered, or when a page cursor skips or repeats todos after a rebalance.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ranking;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RankingServiceTest {
+
+    private static final long GAP = RankingService.GAP;
+    private static final long USER_ID = 40_000_000;
+    private static final String USERNAME = "ranking";
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long nextId = USER_ID + 1;
+
+    @BeforeAll
+    void seedUser() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated) VALUES (?, ?, ?, 'x', ?, ?, ?, TRUE)",
+                USER_ID, USERNAME, USERNAME + "@todolist.local", now, now, now);
+    }
+
+    @AfterEach
+    void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void placesATodoAtTheHeadInTheMiddleAndAtTheTail() {
+        long category = category("Place");
+        List<Long> ids = todos(category, false, GAP, 2 * GAP, 3 * GAP, 4 * GAP, 5 * GAP);
+        long moved = ids.get(4);
+
+        place(moved, 1);
+        assertEquals(List.of(moved, ids.get(0), ids.get(1), ids.get(2), ids.get(3)), order(category, false));
+        place(moved, 3);
+        assertEquals(List.of(ids.get(0), ids.get(1), moved, ids.get(2), ids.get(3)), order(category, false));
+        place(moved, null);
+        assertEquals(ids, order(category, false));
+
+        // Only the placed todo was written each time
+        Map<Long, Long> keys = keys(category, false);
+        for (int i = 0; i < 4; i++) {
+            assertEquals((i + 1) * GAP, keys.get(ids.get(i)), "key of untouched todo " + ids.get(i));
+        }
+    }
+
+    @Test
+    void renumbersAGroupWithNoRoomLeftBetweenTwoKeys() {
+        long category = category("Exhausted");
+        List<Long> ids = todos(category, false, 1, 2, 3, 100);
+        long moved = ids.get(3);
+
+        place(moved, 2);
+
+        assertEquals(List.of(ids.get(0), moved, ids.get(1), ids.get(2)), order(category, false));
+        Map<Long, Long> keys = keys(category, false);
+        assertEquals(GAP, keys.get(ids.get(0)));
+        assertEquals(2 * GAP, keys.get(ids.get(1)));
+        assertEquals(3 * GAP, keys.get(ids.get(2)));
+    }
+
+    @Test
+    void togglesATodoToTheEndOfTheOtherDoneGroupAndBack() {
+        long category = category("Toggle");
+        List<Long> open = todos(category, false, GAP, 2 * GAP, 3 * GAP);
+        List<Long> done = todos(category, true, GAP, 2 * GAP);
+        long toggled = open.get(0);
+
+        toggle(toggled);
+        assertEquals(List.of(open.get(1), open.get(2)), order(category, false));
+        assertEquals(List.of(done.get(0), done.get(1), toggled), order(category, true));
+
+        toggle(toggled);
+        assertEquals(List.of(open.get(1), open.get(2), toggled), order(category, false));
+        assertEquals(done, order(category, true));
+    }
+
+    @Test
+    void reordersByMovingOnlyTheTodosOutOfOrder() {
+        long category = category("Reorder");
+        List<Long> ids = todos(category, false, GAP, 2 * GAP, 3 * GAP, 4 * GAP, 5 * GAP);
+        Map<Long, Long> before = keys(category, false);
+        List<Long> desired = List.of(ids.get(0), ids.get(3), ids.get(1), ids.get(2), ids.get(4));
+
+        inTransaction(() -> rankingService.reorder(List.of(load(desired))));
+
+        assertEquals(desired, order(category, false));
+        Map<Long, Long> after = keys(category, false);
+        for (Long id : ids) {
+            if (!id.equals(ids.get(3))) {
+                assertEquals(before.get(id), after.get(id), "key of todo " + id + " that kept its order");
+            }
+        }
+    }
+
+    @Test
+    void pagesThroughAGroupRebalancedBetweenPages() {
+        long category = category("Paged");
+        long[] keys = new long[10];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 1000 * GAP * (i + 1);
+        }
+        List<Long> ids = todos(category, false, keys);
+        signIn();
+
+        TodoPageDto first = todoService.getTodoPageByCategory("Paged", 4, null);
+        inTransaction(() -> rankingService.rebalance(category, false));
+        TodoPageDto second = todoService.getTodoPageByCategory("Paged", 4, first.getNextCursor());
+        assertNotNull(second.getNextCursor());
+        TodoPageDto third = todoService.getTodoPageByCategory("Paged", 4, second.getNextCursor());
+
+        assertEquals(ids.subList(0, 4), idsOf(first));
+        assertEquals(ids.subList(4, 8), idsOf(second));
+        assertEquals(ids.subList(8, 10), idsOf(third));
+        assertEquals(List.of(5, 6, 7, 8), second.getItems().stream().map(TodoDto::getRanking).toList());
+        assertNull(third.getNextCursor());
+    }
+
+    private void place(long id, Integer position) {
+        inTransaction(() -> rankingService.placeAt(todoRepository.findById(id).orElseThrow(), position));
+    }
+
+    // As TodoService.toggleTodo: placed in the other group before its done state changes
+    private void toggle(long id) {
+        inTransaction(() -> {
+            Todo todo = todoRepository.findById(id).orElseThrow();
+            boolean done = !todo.getDone();
+            rankingService.placeAt(todo, done, null);
+            todo.setDone(done);
+        });
+    }
+
+    private List<Todo> load(List<Long> ids) {
+        List<Todo> todos = new ArrayList<>();
+        for (Long id : ids) {
+            todos.add(todoRepository.findById(id).orElseThrow());
+        }
+        return todos;
+    }
+
+    private void inTransaction(Runnable work) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> work.run());
+    }
+
+    private void signIn() {
+        UserPrincipal principal = userDetailsService.loadAuthenticatedUser(USERNAME);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private static List<Long> idsOf(TodoPageDto page) {
+        return page.getItems().stream().map(TodoDto::getId).toList();
+    }
+
+    private long category(String name) {
+        long id = nextId++;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, audit_date_modified) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", id, name, USER_ID, now, now, now);
+        return id;
+    }
+
+    // Todos of one rank group with the given keys, in that order
+    private List<Long> todos(long categoryId, boolean done, long... keys) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> ids = new ArrayList<>();
+        for (long key : keys) {
+            long id = nextId++;
+            jdbc.update("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                            + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    id, "Todo " + id, key, done, categoryId, USER_ID, now, now, now);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private List<Long> order(long categoryId, boolean done) {
+        return jdbc.queryForList("SELECT id FROM todos WHERE category_id = ? AND done = ? ORDER BY rank_key, id",
+                Long.class, categoryId, done);
+    }
+
+    private Map<Long, Long> keys(long categoryId, boolean done) {
+        Map<Long, Long> keys = new HashMap<>();
+        Consumer<Map<String, Object>> put = row -> keys.put(((Number) row.get("ID")).longValue(),
+                ((Number) row.get("RANK_KEY")).longValue());
+        jdbc.queryForList("SELECT id, rank_key FROM todos WHERE category_id = ? AND done = ?", categoryId, done)
+                .forEach(put);
+        return keys;
+    }
+}
@@ -0,0 +1,132 @@
+package com.todolist.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal in-process SMTP server for checking the email outbox. It holds every message until
+ * {@link #release()} is called and then accepts it after {@code delayMillis}, like a slow mail server,
+ * except for recipients starting with "reject", which are refused permanently, and recipients starting
+ * with "flaky", which are refused the first time.
+ */
+final class SmtpStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final long delayMillis;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final Set<String> refusedOnce = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    SmtpStandIn(long delayMillis) {
+        this.delayMillis = delayMillis;
+        try {
+            this.serverSocket = new ServerSocket(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Thread.ofVirtual().name("smtp-accept").start(this::accept);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    void release() {
+        released.countDown();
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    List<String> delivered() {
+        return delivered;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread.ofVirtual().start(() -> session(socket));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost SMTP stand-in");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO", "MAIL", "NOOP" -> reply(out, "250 OK");
+                    case "RSET" -> {
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                        if (recipient.startsWith("reject")) {
+                            reply(out, "550 Mailbox unavailable");
+                        } else if (recipient.startsWith("flaky") && refusedOnce.add(recipient)) {
+                            reply(out, "451 Try again later");
+                        } else {
+                            recipients.add(recipient);
+                            reply(out, "250 OK");
+                        }
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // the message itself is not kept
+                        }
+                        released.await();
+                        Thread.sleep(delayMillis);
+                        delivered.addAll(recipients);
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
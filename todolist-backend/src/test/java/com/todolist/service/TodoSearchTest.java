@@ -0,0 +1,292 @@
+package com.todolist.service;
+
+import com.todolist.dto.TodoDto;
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import com.todolist.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+
+/**
+ * Searches seeded todos of random words through GET /api/todos/search and follows a todo through
+ * creation, edits, a toggle, a category rename, a batch and deletes. Fails when a result lacks a word
+ * of the query or the last word as a prefix, when a match is missing while fewer than the limit
+ * exist, when a write does not show in the next search or makes the index build again, or when the
+ * index of a user deleted by UserCleanupService is kept.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:search;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "app.rate-limit.enabled=false",
+        // The test runs the job itself
+        "app.user-cleanup.initial-delay=86400000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TodoSearchTest {
+
+    private static final int TODOS = 2000;
+    private static final int CATEGORIES = 5;
+    private static final int WORDS = 300;
+    private static final int LIMIT = 100;
+    private static final long SEEDED_ID = 80_000_000;
+    private static final long WRITER_ID = 81_000_000;
+    private static final long EXPIRED_ID = 82_000_000;
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern RESULT_ID = Pattern.compile("\"id\":(\\d+),\"title\"");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TodoSearchService todoSearchService;
+
+    @Autowired
+    private UserCleanupService userCleanupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final String[] vocabulary = vocabulary(new Random(1));
+    // The words of each seeded todo, by todo id - SEEDED_ID
+    private final List<Set<String>> seededWords = new ArrayList<>();
+    private String seededToken;
+    private String writerToken;
+
+    @BeforeAll
+    void seed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        user(SEEDED_ID, "search-seeded", true, now);
+        user(WRITER_ID, "search-writer", true, now);
+        Random random = new Random(2);
+        List<Object[]> rows = new ArrayList<>();
+        for (int t = 0; t < TODOS; t++) {
+            String title = sentence(random, 3 + random.nextInt(4));
+            String description = sentence(random, 8 + random.nextInt(8));
+            Set<String> words = new HashSet<>(Arrays.asList(title.split(" ")));
+            words.addAll(Arrays.asList(description.split(" ")));
+            seededWords.add(words);
+            rows.add(new Object[]{SEEDED_ID + t, title, description, (t / CATEGORIES + 1L) << 20,
+                    SEEDED_ID + t % CATEGORIES, SEEDED_ID, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO todos (id, title, description, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, FALSE, ?, ?, ?, ?, ?)", rows);
+        seededToken = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser("search-seeded"));
+        writerToken = jwtTokenUtil.generateToken(userDetailsService.loadAuthenticatedUser("search-writer"));
+    }
+
+    @AfterEach
+    void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // Against a scan of the seeded words
+    @Test
+    void findsTheTodosContainingEveryWordOfTheQuery() throws Exception {
+        Random random = new Random(3);
+        int compared = 0;
+        for (int i = 0; i < 200; i++) {
+            String[] query = query(random);
+            Set<Long> expected = new HashSet<>();
+            for (int t = 0; t < seededWords.size(); t++) {
+                if (matches(seededWords.get(t), query)) {
+                    expected.add(SEEDED_ID + t);
+                }
+            }
+            List<Long> found = search(seededToken, String.join(" ", query));
+            assertTrue(expected.containsAll(found), "\"" + String.join(" ", query) + "\" found " + found
+                    + ", containing it are " + expected);
+            if (expected.size() <= LIMIT) {
+                assertEquals(expected, new HashSet<>(found), "\"" + String.join(" ", query) + "\"");
+                compared += expected.isEmpty() ? 0 : 1;
+            }
+        }
+        assertTrue(compared > 50, "only " + compared + " queries with matches");
+    }
+
+    // Each write is applied to the index when it commits, so the first search is the only build
+    @Test
+    void showsEveryWriteInTheNextSearchWithoutBuildingTheIndexAgain() throws Exception {
+        assertEquals(List.of(), search(writerToken, "quokka"));
+        double builds = builds();
+
+        Long created = id(send(HttpMethod.POST, "/api/todos", "{\"title\":\"Quokka census\","
+                + "\"description\":\"Count the quokkas\",\"ranking\":1,\"categoryName\":\"Category 0\"}"));
+        assertEquals(List.of(created), search(writerToken, "quokka"));
+        assertEquals(List.of(created), search(writerToken, "quokka cens"));
+
+        send(HttpMethod.PUT, "/api/todos/" + created, "{\"title\":\"Wombat census\",\"description\":\"\","
+                + "\"ranking\":1,\"categoryName\":\"Category 0\"}");
+        assertEquals(List.of(), search(writerToken, "quokka"));
+        assertEquals(List.of(created), search(writerToken, "wombat"));
+
+        send(HttpMethod.PATCH, "/api/todos/" + created + "/toggle", null);
+        send(HttpMethod.PUT, "/api/categories/" + WRITER_ID, "{\"name\":\"Renamed\"}");
+        assertEquals(List.of(created), search(writerToken, "wombat"));
+
+        Long batched = id(send(HttpMethod.POST, "/api/todos/batch", "[{\"op\":\"CREATE\",\"todo\":{\"title\":"
+                + "\"Platypus survey\",\"ranking\":1,\"categoryName\":\"Renamed\"}},{\"op\":\"DELETE\",\"id\":" + created + "}]"));
+        assertEquals(List.of(), search(writerToken, "wombat"));
+        assertEquals(List.of(batched), search(writerToken, "platypus"));
+
+        send(HttpMethod.DELETE, "/api/categories/" + WRITER_ID, null);
+        assertEquals(List.of(), search(writerToken, "platypus"));
+
+        assertEquals(builds, builds(), "index builds");
+    }
+
+    @Test
+    void dropsTheIndexOfAUserDeletedByTheCleanup() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        user(EXPIRED_ID, "search-expired", false, now);
+        jdbc.update("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, 'Echidna walk', ?, FALSE, ?, ?, ?, ?, ?)",
+                EXPIRED_ID, 1L << 20, EXPIRED_ID, EXPIRED_ID, now, now, now);
+        UserPrincipal principal = userDetailsService.loadAuthenticatedUser("search-expired");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        assertEquals(List.of(EXPIRED_ID), todoSearchService.search("echidna", null).stream().map(TodoDto::getId).toList());
+        double indexes = indexes();
+
+        userCleanupService.cleanupExpiredUnvalidatedUsers();
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, EXPIRED_ID));
+        assertEquals(indexes - 1, indexes(), "indexes kept");
+    }
+
+    private void user(long id, String username, boolean validated, Timestamp now) {
+        Timestamp expiry = Timestamp.valueOf(LocalDateTime.now().plusDays(validated ? 1 : -1));
+        jdbc.update("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                        + "audit_date_modified, email_validated, email_validation_token, email_validation_token_expiry) "
+                        + "VALUES (?, ?, ?, 'x', ?, ?, ?, ?, ?, ?)",
+                id, username, username + "@todolist.local", now, now, now, validated, "token-" + id, expiry);
+        for (int c = 0; c < CATEGORIES; c++) {
+            jdbc.update("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                    + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", id + c, "Category " + c, id, now, now, now);
+        }
+    }
+
+    private double builds() {
+        return meterRegistry.get("cache.gets").tags("cache", "todo-search", "result", "miss").functionCounter().count();
+    }
+
+    private double indexes() {
+        return meterRegistry.get("cache.size").tag("cache", "todo-search").gauge().value();
+    }
+
+    private List<Long> search(String token, String query) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/todos/search")
+                .param("q", query).param("limit", String.valueOf(LIMIT))
+                .header("Authorization", "Bearer " + token)).andReturn().getResponse();
+        assertEquals(200, response.getStatus(), "search for \"" + query + "\"");
+        List<Long> ids = new ArrayList<>();
+        Matcher id = RESULT_ID.matcher(response.getContentAsString());
+        while (id.find()) {
+            ids.add(Long.parseLong(id.group(1)));
+        }
+        return ids;
+    }
+
+    // The body of a write of the writer, which must succeed
+    private String send(HttpMethod method, String path, String json) throws Exception {
+        MockHttpServletRequestBuilder request = request(method, path).header("Authorization", "Bearer " + writerToken);
+        if (json != null) {
+            request.contentType(MediaType.APPLICATION_JSON).content(json);
+        }
+        MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+        assertEquals(2, response.getStatus() / 100, method + " " + path + ": " + response.getContentAsString());
+        return response.getContentAsString();
+    }
+
+    private static Long id(String body) {
+        Matcher id = ID.matcher(body);
+        assertTrue(id.find(), "no id in " + body);
+        return Long.parseLong(id.group(1));
+    }
+
+    private static boolean matches(Set<String> words, String[] query) {
+        for (int i = 0; i < query.length - 1; i++) {
+            if (!words.contains(query[i])) {
+                return false;
+            }
+        }
+        String prefix = query[query.length - 1];
+        return words.stream().anyMatch(word -> word.startsWith(prefix));
+    }
+
+    // One or two whole words and a prefix of at least two letters
+    private String[] query(Random random) {
+        String[] query = new String[1 + random.nextInt(3)];
+        for (int i = 0; i < query.length; i++) {
+            query[i] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+        String last = query[query.length - 1];
+        query[query.length - 1] = last.substring(0, 2 + random.nextInt(last.length() - 1));
+        return query;
+    }
+
+    // Pronounceable words of two to four syllables, all starting with a consonant
+    private static String[] vocabulary(Random random) {
+        String consonants = "bcdfghjklmnprstvwz";
+        String vowels = "aeiou";
+        Set<String> words = new HashSet<>();
+        while (words.size() < WORDS) {
+            StringBuilder word = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) {
+                word.append(consonants.charAt(random.nextInt(consonants.length())));
+                word.append(vowels.charAt(random.nextInt(vowels.length())));
+            }
+            words.add(word.toString());
+        }
+        return words.stream().sorted().toArray(String[]::new);
+    }
+
+    private String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            sentence.append(w > 0 ? " " : "").append(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return sentence.toString();
+    }
+}
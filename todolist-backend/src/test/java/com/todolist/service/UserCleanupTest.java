@@ -0,0 +1,223 @@
+package com.todolist.service;
+
+import com.todolist.config.SqlStatementCounter;
+import com.todolist.repository.ExpiredUser;
+import com.todolist.repository.JobLeaseRepository;
+import com.todolist.repository.UserRepository;
+import com.todolist.security.AuthenticatedUserCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the cleanup job of two instances on one database at once, each with a lease owner of its
+ * own: first while another owner holds the user-cleanup lease, then once that lease has run out as
+ * when its instance died. Fails when anything is deleted under another owner's lease, when the
+ * expired users are not all deleted by exactly one instance, chunk by chunk, with their categories
+ * and todos, when an account that has not expired is deleted, or when a user validated or given a
+ * new expiry after the job found it expired is deleted with its chunk.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:user-cleanup;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        // The test runs the job itself
+        "app.user-cleanup.initial-delay=86400000",
+        "app.user-cleanup.batch-size=50"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserCleanupTest {
+
+    private static final int EXPIRED = 2000;
+    private static final int KEPT = 100;
+    private static final int BATCH_SIZE = 50;
+    private static final int TODOS_PER_USER = 3;
+    private static final long FIRST_ID = 60_000_000;
+    private static final long RECHECKED_ID = 70_000_000;
+
+    @Autowired
+    private UserCleanupService first;
+
+    @Autowired
+    private MeterRegistry firstMeters;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+
+    @Autowired
+    private TodoSearchIndex todoSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final MeterRegistry secondMeters = new SimpleMeterRegistry();
+    private UserCleanupService second;
+
+    private long usersUnderForeignLease;
+    private final List<Instance> underForeignLease = new ArrayList<>();
+    private final List<Instance> afterForeignLease = new ArrayList<>();
+
+    private record Instance(double deleted, long skipped, int statements) {
+    }
+
+    @BeforeAll
+    void runOnTwoInstances() throws InterruptedException {
+        second = new UserCleanupService(userRepository, authenticatedUserCache, todoSearchIndex,
+                new JobLeaseService(jobLeaseRepository), secondMeters);
+        ReflectionTestUtils.setField(second, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(second, "leaseSeconds", 600L);
+        seed(FIRST_ID, EXPIRED, KEPT);
+
+        jdbc.update("INSERT INTO job_leases (name, owner, lease_until) VALUES ('user-cleanup', 'elsewhere', ?)",
+                Timestamp.valueOf(LocalDateTime.now().plusHours(1)));
+        underForeignLease.addAll(runOnBoth());
+        usersUnderForeignLease = count("SELECT COUNT(*) FROM users WHERE id >= ? AND id < ?", FIRST_ID, RECHECKED_ID);
+
+        // Its lease ended without a release
+        jdbc.update("UPDATE job_leases SET lease_until = ? WHERE name = 'user-cleanup'",
+                Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+        afterForeignLease.addAll(runOnBoth());
+    }
+
+    @Test
+    void deletesNothingUnderTheLeaseOfAnotherOwner() {
+        assertEquals(EXPIRED + KEPT, usersUnderForeignLease);
+        for (Instance instance : underForeignLease) {
+            assertEquals(0, instance.deleted());
+            assertEquals(1, instance.skipped(), "skipped runs");
+        }
+    }
+
+    @Test
+    void deletesTheExpiredUsersOnOneInstanceOnly() {
+        double byFirst = afterForeignLease.get(0).deleted() - underForeignLease.get(0).deleted();
+        double bySecond = afterForeignLease.get(1).deleted() - underForeignLease.get(1).deleted();
+        assertEquals(EXPIRED, byFirst + bySecond, "deleted users");
+        assertEquals(0, Math.min(byFirst, bySecond), "deleted by the first " + byFirst + ", by the second " + bySecond);
+    }
+
+    @Test
+    void deletesExpiredUsersWithTheirRowsAndKeepsTheOthers() {
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE id >= ? AND id < ? AND email_validation_token_expiry "
+                + "< CURRENT_TIMESTAMP", FIRST_ID, RECHECKED_ID), "expired users left");
+        assertEquals(KEPT, count("SELECT COUNT(*) FROM users WHERE id >= ? AND id < ?", FIRST_ID, RECHECKED_ID));
+        assertEquals(0, count("SELECT COUNT(*) FROM categories c WHERE NOT EXISTS "
+                + "(SELECT 1 FROM users u WHERE u.id = c.user_id)"), "categories of deleted users");
+        assertEquals(0, count("SELECT COUNT(*) FROM todos t WHERE NOT EXISTS "
+                + "(SELECT 1 FROM users u WHERE u.id = t.user_id)"), "todos of deleted users");
+    }
+
+    // A read, a delete and a lease extension per chunk, rather than one statement or one per user
+    @Test
+    void deletesInChunksOfTheBatchSize() {
+        int chunks = EXPIRED / BATCH_SIZE;
+        int statements = afterForeignLease.stream().filter(instance -> instance.deleted() > 0)
+                .mapToInt(Instance::statements).sum();
+        assertTrue(statements >= 3 * chunks && statements <= 3 * chunks + 5,
+                statements + " statements for " + chunks + " chunks");
+    }
+
+    @Test
+    void keepsUsersValidatedOrRenewedAfterTheyWereFoundExpired() {
+        seed(RECHECKED_ID, 4, 0);
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = userRepository.findExpiredUnvalidatedUsers(now, PageRequest.of(0, 100)).stream()
+                .map(ExpiredUser::getId).toList();
+        assertEquals(List.of(RECHECKED_ID, RECHECKED_ID + 1, RECHECKED_ID + 2, RECHECKED_ID + 3), ids);
+
+        jdbc.update("UPDATE users SET email_validated = TRUE WHERE id = ?", RECHECKED_ID);
+        jdbc.update("UPDATE users SET email_validation_token_expiry = ? WHERE id = ?",
+                Timestamp.valueOf(now.plusDays(1)), RECHECKED_ID + 1);
+
+        assertEquals(2, userRepository.deleteExpiredUnvalidatedUsers(ids, now));
+        assertEquals(List.of(RECHECKED_ID, RECHECKED_ID + 1),
+                jdbc.queryForList("SELECT id FROM users WHERE id >= ? ORDER BY id", Long.class, RECHECKED_ID));
+    }
+
+    // Both instances start at once; each counts the statements of its own run
+    private List<Instance> runOnBoth() throws InterruptedException {
+        CountDownLatch go = new CountDownLatch(1);
+        int[] statements = new int[2];
+        List<Thread> threads = new ArrayList<>();
+        List<UserCleanupService> instances = List.of(first, second);
+        for (int i = 0; i < instances.size(); i++) {
+            UserCleanupService cleanup = instances.get(i);
+            int index = i;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                SqlStatementCounter.start();
+                cleanup.cleanupExpiredUnvalidatedUsers();
+                statements[index] = SqlStatementCounter.stop();
+            }));
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return List.of(instance(firstMeters, statements[0]), instance(secondMeters, statements[1]));
+    }
+
+    private static Instance instance(MeterRegistry meters, int statements) {
+        Timer skipped = meters.find("users.cleanup").tag("outcome", "skipped").timer();
+        return new Instance(meters.get("users.cleanup.deleted").counter().count(),
+                skipped != null ? skipped.count() : 0, statements);
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbc.queryForObject(sql, Long.class, args);
+    }
+
+    // Expired accounts with a category and todos each, then accounts whose validation is still open
+    private void seed(long firstId, int expired, int kept) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp past = Timestamp.valueOf(LocalDateTime.now().minusDays(2));
+        Timestamp future = Timestamp.valueOf(LocalDateTime.now().plusDays(1));
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> categories = new ArrayList<>();
+        List<Object[]> todos = new ArrayList<>();
+        for (int i = 0; i < expired + kept; i++) {
+            long id = firstId + i;
+            users.add(new Object[]{id, "cleanup-" + id, "cleanup-" + id + "@todolist.local", now, now, now,
+                    "token-" + id, i < expired ? past : future});
+            categories.add(new Object[]{id, "Inbox", id, now, now, now});
+            for (int t = 0; t < TODOS_PER_USER; t++) {
+                todos.add(new Object[]{id * TODOS_PER_USER + t, "Todo " + t, (t + 1L) << 20, id, id, now, now, now});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                + "audit_date_modified, email_validated, email_validation_token, email_validation_token_expiry) "
+                + "VALUES (?, ?, ?, 'x', ?, ?, ?, FALSE, ?, ?)", users);
+        jdbc.batchUpdate("INSERT INTO categories (id, name, user_id, date_created, audit_date_created, "
+                + "audit_date_modified) VALUES (?, ?, ?, ?, ?, ?)", categories);
+        jdbc.batchUpdate("INSERT INTO todos (id, title, rank_key, done, category_id, user_id, date_created, "
+                + "audit_date_created, audit_date_modified) VALUES (?, ?, ?, FALSE, ?, ?, ?, ?, ?)", todos);
+    }
+}
@@ -0,0 +1,62 @@
+package com.todolist.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executors;
+
+/**
+ * Calls the REST API of a backend started by {@link BackendState} as one user.
+ * Clients share one HTTP/1.1 client whose callbacks run on virtual threads.
+ */
+public final class ApiClient {
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private final String baseUrl;
+    private final String token;
+
+    public ApiClient(BackendState backend, String username) {
+        this.baseUrl = "http://localhost:" + backend.port();
+        this.token = backend.token(username);
+    }
+
+    // Without a user, for the public endpoints
+    public ApiClient(BackendState backend) {
+        this.baseUrl = "http://localhost:" + backend.port();
+        this.token = null;
+    }
+
+    public HttpResponse<String> get(String path) {
+        return send(request(path).GET());
+    }
+
+    public HttpResponse<String> send(String method, String path, String json) {
+        HttpRequest.BodyPublisher body = json != null
+                ? HttpRequest.BodyPublishers.ofString(json)
+                : HttpRequest.BodyPublishers.noBody();
+        return send(request(path).header("Content-Type", "application/json").method(method, body));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        return token != null ? request.header("Authorization", "Bearer " + token) : request;
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) {
+        try {
+            return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.todolist.benchmark;
+
+import com.todolist.TodolistBackendApplication;
+import com.todolist.security.CustomUserDetailsService;
+import com.todolist.security.JwtTokenUtil;
+import com.todolist.security.UserPrincipal;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Boots the backend against an in-memory H2 database created from the Liquibase changelog
+ * and seeds {@code users} users with {@code todosPerUser} todos each, spread evenly over
+ * {@link #CATEGORY_NAMES}. 80% of the todos of a category are open, the rest done.
+ */
+@State(Scope.Benchmark)
+public class BackendState {
+
+    public static final String PASSWORD = "benchmark-password";
+    public static final String[] CATEGORY_NAMES = {"Personal Goals", "Professional Goals", "Health", "Learning", "Errands"};
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final long RANK_GAP = 1L << 20;
+    // A fresh database for every start, for tools that boot the backend more than once
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"500"})
+    public int todosPerUser;
+
+    // Off by default so the listing benchmarks keep measuring the queries
+    @Param({"false"})
+    public boolean listingCache;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private CustomUserDetailsService userDetailsService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        start(new String[0]);
+    }
+
+    /**
+     * Boots and seeds the backend, with extra {@code --property=value} arguments appended to the defaults.
+     */
+    public void start(String... extraArgs) {
+        boot("jdbc:h2:mem:todolist-benchmark-" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", extraArgs);
+        seed(context.getBean(PasswordEncoder.class).encode(PASSWORD));
+    }
+
+    private void boot(String databaseUrl, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--spring.profiles.active=benchmark",
+                "--spring.datasource.url=" + databaseUrl,
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.liquibase.change-log=classpath:db/changelog/db.changelog-master.xml",
+                "--jwt.secret=benchmark-secret-benchmark-secret-benchmark",
+                "--spring.mail.host=localhost",
+                "--spring.mail.username=benchmark@todolist.local",
+                "--app.listing-cache.enabled=" + listingCache,
+                // Load from a single client is measured rather than answered with 429
+                "--app.rate-limit.enabled=false",
+                "--app.sql-statements.enabled=true",
+                "--logging.level.root=WARN",
+                "--logging.level.com.todolist=WARN"));
+        args.addAll(List.of(extraArgs));
+        context = new SpringApplicationBuilder(TodolistBackendApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args.toArray(new String[0]));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        userDetailsService = context.getBean(CustomUserDetailsService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcTemplate jdbc() {
+        return jdbcTemplate;
+    }
+
+    public int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    /**
+     * A bearer token for the given user, for tools that call the backend over HTTP.
+     */
+    public String token(String username) {
+        return context.getBean(JwtTokenUtil.class).generateToken(userDetailsService.loadAuthenticatedUser(username));
+    }
+
+    public String randomUsername() {
+        return username(ThreadLocalRandom.current().nextInt(users));
+    }
+
+    public String randomCategoryName() {
+        return CATEGORY_NAMES[ThreadLocalRandom.current().nextInt(CATEGORY_NAMES.length)];
+    }
+
+    public static String username(int index) {
+        return "bench-user-" + index;
+    }
+
+    /**
+     * Puts the given user into the security context the same way JwtAuthenticationFilter does.
+     */
+    public void authenticate(String username) {
+        UserPrincipal principal = userDetailsService.loadAuthenticatedUser(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private void seed(String encodedPassword) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // Seeded rows get database generated ids; keep them clear of the ids Hibernate's pooled generators handed out
+        for (String table : new String[]{"users", "categories", "todos"}) {
+            Long nextVal = jdbcTemplate.queryForObject("SELECT next_val FROM id_generators WHERE sequence_name = ?",
+                    Long.class, table);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (nextVal + 1));
+        }
+
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            userRows.add(new Object[]{username(i), username(i) + "@benchmark.local", encodedPassword, now, now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, email, password, date_created, audit_date_created, " +
+                "audit_date_modified, email_validated) VALUES (?, ?, ?, ?, ?, ?, TRUE)", userRows);
+
+        List<Object[]> categoryRows = new ArrayList<>();
+        jdbcTemplate.query("SELECT id FROM users WHERE username LIKE 'bench-user-%'", rs -> {
+            for (String name : CATEGORY_NAMES) {
+                categoryRows.add(new Object[]{name, rs.getLong(1), now, now, now});
+            }
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO categories (name, user_id, date_created, audit_date_created, " +
+                "audit_date_modified) VALUES (?, ?, ?, ?, ?)", categoryRows);
+
+        int perCategory = todosPerUser / CATEGORY_NAMES.length;
+        int open = perCategory * 4 / 5;
+        String insertTodo = "INSERT INTO todos (title, description, rank_key, done, category_id, user_id, " +
+                "date_created, audit_date_created, audit_date_modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> todoRows = new ArrayList<>(INSERT_BATCH_SIZE);
+        jdbcTemplate.query("SELECT c.id, c.user_id FROM categories c JOIN users u ON u.id = c.user_id " +
+                "WHERE u.username LIKE 'bench-user-%'", rs -> {
+            long categoryId = rs.getLong(1);
+            long userId = rs.getLong(2);
+            for (int i = 0; i < perCategory; i++) {
+                boolean done = i >= open;
+                long rankKey = (done ? i - open + 1 : i + 1) * RANK_GAP;
+                todoRows.add(new Object[]{"Todo " + (i + 1), "Seeded description for benchmark todo number " + (i + 1),
+                        rankKey, done, categoryId, userId, now, now, now});
+                if (todoRows.size() == INSERT_BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate(insertTodo, todoRows);
+                    todoRows.clear();
+                }
+            }
+        });
+        if (!todoRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertTodo, todoRows);
+        }
+
+        // And move the generators past the seeded rows
+        for (String table : new String[]{"users", "categories", "todos"}) {
+            jdbcTemplate.update("UPDATE id_generators SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM " + table +
+                    ") WHERE sequence_name = ?", table);
+        }
+    }
+}
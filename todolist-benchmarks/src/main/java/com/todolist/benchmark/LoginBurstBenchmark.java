@@ -0,0 +1,102 @@
+package com.todolist.benchmark;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures GET /api/todos from a few clients, after a warmup alone and then during a burst of logins,
+ * to show how much the BCrypt work of the burst takes from the other endpoints. Prints the latency
+ * percentiles of both phases and the status codes of the logins; 503 means the login
+ * waited longer than app.password.hashing-wait for a hashing thread or found the queue full.
+ * Arguments: logins in the burst (default 500), todo clients (10), seconds per phase (10).
+ */
+public final class LoginBurstBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        BackendState backend = new BackendState();
+        backend.users = clients;
+        backend.todosPerUser = 50;
+        backend.start();
+        try {
+            List<ApiClient> apiClients = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                apiClients.add(new ApiClient(backend, BackendState.username(i)));
+            }
+            // Warmup
+            measure(apiClients, seconds, null);
+            long[] alone = measure(apiClients, seconds, null);
+
+            Map<Integer, AtomicInteger> loginStatuses = new ConcurrentHashMap<>();
+            ApiClient anonymous = new ApiClient(backend);
+            long[] duringBurst = measure(apiClients, seconds, () -> {
+                try (ExecutorService burst = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int i = 0; i < logins; i++) {
+                        String username = BackendState.username(i % clients);
+                        burst.execute(() -> {
+                            HttpResponse<String> response = anonymous.send("POST", "/api/auth/login",
+                                    "{\"username\":\"" + username + "\",\"password\":\"" + BackendState.PASSWORD + "\"}");
+                            loginStatuses.computeIfAbsent(response.statusCode(), status -> new AtomicInteger()).incrementAndGet();
+                        });
+                    }
+                }
+            });
+
+            System.out.printf("%n%-14s %10s %10s %10s %10s%n", "GET /api/todos", "requests", "p50 ms", "p99 ms", "max ms");
+            print("alone", alone);
+            print("during burst", duringBurst);
+            System.out.println("logins by status: " + loginStatuses);
+        } finally {
+            backend.stop();
+        }
+    }
+
+    // Runs the clients for the given seconds, with the burst started alongside them
+    private static long[] measure(List<ApiClient> apiClients, int seconds, Runnable burst) throws InterruptedException {
+        long until = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Long> latencies = new ArrayList<>();
+        AtomicBoolean burstDone = new AtomicBoolean(burst == null);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (burst != null) {
+                executor.execute(() -> {
+                    burst.run();
+                    burstDone.set(true);
+                });
+            }
+            for (ApiClient client : apiClients) {
+                executor.execute(() -> {
+                    List<Long> own = new ArrayList<>();
+                    long start;
+                    while ((start = System.nanoTime()) < until || !burstDone.get()) {
+                        client.get("/api/todos");
+                        own.add(System.nanoTime() - start);
+                    }
+                    synchronized (latencies) {
+                        latencies.addAll(own);
+                    }
+                });
+            }
+        }
+        return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static void print(String phase, long[] sorted) {
+        if (sorted.length == 0) {
+            System.out.printf("%-14s %10d%n", phase, 0);
+            return;
+        }
+        System.out.printf("%-14s %10d %10.1f %10.1f %10.1f%n", phase, sorted.length,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,97 @@
+package com.todolist.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the platform and virtual thread modes of the backend (spring.threads.virtual.enabled)
+ * for GET /api/todos under many concurrent clients. Each client is a virtual thread with its own
+ * user that sends requests back to back; after a warmup the requests per second and latency
+ * percentiles of each mode are printed.
+ * Arguments: clients (default 2000), warmup seconds (10), measured seconds (30).
+ */
+public final class ThreadModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int warmupSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        List<String> results = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            BackendState backend = new BackendState();
+            backend.users = clients;
+            backend.todosPerUser = 50;
+            backend.start("--spring.threads.virtual.enabled=" + virtual);
+            try {
+                results.add(run(backend, virtual ? "virtual" : "platform", clients, warmupSeconds, seconds));
+            } finally {
+                backend.stop();
+            }
+        }
+
+        System.out.printf("%n%-10s %8s %10s %10s %10s %10s %8s%n", "threads", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(BackendState backend, String mode, int clients, int warmupSeconds, int seconds)
+            throws InterruptedException {
+        List<ApiClient> apiClients = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            apiClients.add(new ApiClient(backend, BackendState.username(i)));
+        }
+
+        long measureFrom = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long measureUntil = measureFrom + seconds * 1_000_000_000L;
+        long[][] latencies = new long[clients][];
+        AtomicLong errors = new AtomicLong();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                executor.execute(() -> latencies[client] = loop(apiClients.get(client), measureFrom, measureUntil, errors));
+            }
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            return String.format("%-10s %8d %10s", mode, clients, "no requests completed");
+        }
+        return String.format("%-10s %8d %10.0f %10.1f %10.1f %10.1f %8d", mode, clients, all.length / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6, errors.get());
+    }
+
+    // Latencies in nanoseconds of the requests that started within the measured window
+    private static long[] loop(ApiClient client, long measureFrom, long measureUntil, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        long start;
+        while ((start = System.nanoTime()) < measureUntil) {
+            boolean ok;
+            try {
+                ok = client.get("/api/todos").statusCode() == 200;
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            if (start < measureFrom) {
+                continue;
+            }
+            if (!ok) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,68 @@
+package com.todolist.security;
+
+import com.todolist.benchmark.BackendState;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bearer-token request through JwtAuthenticationFilter, from many concurrent callers
+ * reusing a small set of tokens as browser tabs do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(8)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final int TOKENS = 100;
+
+    @State(Scope.Benchmark)
+    public static class Tokens {
+        String[] tokens;
+
+        @Setup(Level.Trial)
+        public void generate(BackendState backend) {
+            JwtTokenUtil jwtTokenUtil = backend.getBean(JwtTokenUtil.class);
+            CustomUserDetailsService userDetailsService = backend.getBean(CustomUserDetailsService.class);
+            tokens = new String[TOKENS];
+            for (int i = 0; i < TOKENS; i++) {
+                tokens[i] = jwtTokenUtil.generateToken(
+                        userDetailsService.loadUserByUsername(BackendState.username(i % backend.users)));
+            }
+        }
+    }
+
+    @Benchmark
+    public Authentication doFilter(BackendState backend, Tokens tokens) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/todos");
+        request.addHeader("Authorization", "Bearer " + tokens.tokens[ThreadLocalRandom.current().nextInt(TOKENS)]);
+        try {
+            backend.getBean(JwtAuthenticationFilter.class).doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
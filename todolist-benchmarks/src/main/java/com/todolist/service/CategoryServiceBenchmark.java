@@ -0,0 +1,55 @@
+package com.todolist.service;
+
+import com.todolist.benchmark.BackendState;
+import com.todolist.dto.CategoryDto;
+import com.todolist.entity.Category;
+import com.todolist.repository.CategoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CategoryServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DetachedCategories {
+        List<Category> categories;
+
+        @Setup(Level.Trial)
+        public void load(BackendState backend) {
+            categories = backend.getBean(CategoryRepository.class).findAll(PageRequest.of(0, 1000)).getContent();
+        }
+
+        Category random() {
+            return categories.get(ThreadLocalRandom.current().nextInt(categories.size()));
+        }
+    }
+
+    @Benchmark
+    public List<CategoryDto> getAllCategories(BackendState backend) {
+        backend.authenticate(backend.randomUsername());
+        return backend.getBean(CategoryService.class).getAllCategories();
+    }
+
+    @Benchmark
+    public CategoryDto convertToDto(BackendState backend, DetachedCategories detached) {
+        return backend.getBean(CategoryService.class).convertToDto(detached.random());
+    }
+}
@@ -0,0 +1,65 @@
+package com.todolist.service;
+
+import com.todolist.dto.TodoDto;
+import com.todolist.entity.Category;
+import com.todolist.entity.Todo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping of a full todo listing, without any database access.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    private static final int TODOS = 500;
+
+    private TodoService todoService;
+    private List<Todo> todos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        todoService = new TodoService(null, null, null, null, null, null, null, null);
+        todos = new ArrayList<>(TODOS);
+        LocalDateTime now = LocalDateTime.now();
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            categories.add(new Category((long) i + 1, "Category " + (i + 1), now, now, now, null));
+        }
+        for (int i = 0; i < TODOS; i++) {
+            todos.add(new Todo((long) i + 1, "Todo " + (i + 1), "Seeded description for benchmark todo number " + (i + 1),
+                    (i % 100 + 1L) << 20, i % 5 == 0, now, now, now, categories.get(i % categories.size())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TODOS)
+    public void todoConvertToDto(Blackhole blackhole) {
+        int ranking = 0;
+        for (Todo todo : todos) {
+            TodoDto dto = todoService.convertToDto(todo, ++ranking);
+            blackhole.consume(dto);
+        }
+    }
+}
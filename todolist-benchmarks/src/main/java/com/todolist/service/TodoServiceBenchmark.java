@@ -0,0 +1,104 @@
+package com.todolist.service;
+
+import com.todolist.benchmark.BackendState;
+import com.todolist.dto.TodoDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TodoServiceBenchmark {
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String username;
+        String categoryName;
+
+        @Setup(Level.Invocation)
+        public void pick(BackendState backend) {
+            username = backend.randomUsername();
+            categoryName = backend.randomCategoryName();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CreatedTodo {
+        TodoDto created;
+
+        // Drop the inserted todo so every invocation sees the seeded category
+        @TearDown(Level.Invocation)
+        public void restore(BackendState backend) {
+            if (created != null) {
+                backend.jdbc().update("DELETE FROM todos WHERE id = ?", created.getId());
+                created = null;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reorder {
+        String username;
+        List<TodoDto> newOrder;
+
+        // Drag one card of a random column to a random place; the client sends the whole column renumbered
+        @Setup(Level.Invocation)
+        public void prepare(BackendState backend) {
+            username = backend.randomUsername();
+            List<Long> ids = backend.jdbc().queryForList(
+                    "SELECT t.id FROM todos t JOIN categories c ON c.id = t.category_id JOIN users u ON u.id = t.user_id " +
+                    "WHERE u.username = ? AND c.name = ? AND t.done = false ORDER BY t.rank_key, t.id",
+                    Long.class, username, backend.randomCategoryName());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            ids.add(random.nextInt(ids.size()), ids.remove(random.nextInt(ids.size())));
+            newOrder = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                TodoDto dto = new TodoDto();
+                dto.setId(ids.get(i));
+                dto.setRanking(i + 1);
+                newOrder.add(dto);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<TodoDto> getAllTodos(BackendState backend, Caller caller) {
+        backend.authenticate(caller.username);
+        return backend.getBean(TodoService.class).getAllTodos();
+    }
+
+    @Benchmark
+    public TodoDto createTodoAtTop(BackendState backend, Caller caller, CreatedTodo createdTodo) {
+        backend.authenticate(caller.username);
+        TodoDto dto = new TodoDto();
+        dto.setTitle("Benchmark todo");
+        dto.setDescription("Created by TodoServiceBenchmark");
+        dto.setRanking(1);
+        dto.setCategoryName(caller.categoryName);
+        createdTodo.created = backend.getBean(TodoService.class).createTodo(dto);
+        return createdTodo.created;
+    }
+
+    @Benchmark
+    public List<TodoDto> reorderTodos(BackendState backend, Reorder reorder) {
+        backend.authenticate(reorder.username);
+        return backend.getBean(TodoService.class).reorderTodos(reorder.newOrder);
+    }
+}
@@ -165,7 +165,6 @@ export const TodoForm: React.FC<TodoFormProps> = ({ isOpen, onClose, editTodo })
                 value={formData.ranking}
                 onChange={(e) => setFormData(prev => ({ ...prev, ranking: parseInt(e.target.value) || 1 }))}
                 min="1"
-                max="100"
                 required
               />
             </div>
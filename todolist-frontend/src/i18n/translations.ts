@@ -112,7 +112,7 @@ export const translations: Record<string, Translations> = {
     titleRequired: 'Title *',
     description: 'Description',
     ranking: 'Ranking',
-    rankingRequired: 'Ranking (1-100) *',
+    rankingRequired: 'Ranking *',
     rankingRange: '1-100',
     cancel: 'Cancel',
     addTodoButton: 'Add Todo',
@@ -24,6 +24,8 @@ interface CategoryDto {
   auditDateCreated?: string;
   auditDateModified?: string;
   todoCount?: number;
+  openTodoCount?: number;
+  doneTodoCount?: number;
 }
 
 // Utility functions to convert between frontend and backend formats
@@ -18,7 +18,9 @@ export default defineConfig(({ mode }) => {
         '/api': {
           target: env.VITE_API_BASE_URL || 'http://localhost:8080',
           changeOrigin: true,
-          secure: false
+          secure: false,
+          // Sends X-Forwarded-For, so the backend rate limits each browser rather than the dev server
+          xfwd: true
         }
       }
     },
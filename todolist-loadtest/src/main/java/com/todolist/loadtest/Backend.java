@@ -0,0 +1,131 @@
+package com.todolist.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todolist.TodolistBackendApplication;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Boots the backend in this JVM against an in-memory H2 database created from the Liquibase
+ * changelog, with rate limiting off since every client shares one IP. Users are inserted directly,
+ * everything else goes through the REST API: each user signs in, creates the categories and then
+ * the todos in batches.
+ */
+final class Backend {
+
+    static final String[] CATEGORY_NAMES = {"Personal Goals", "Professional Goals", "Health", "Learning", "Errands"};
+
+    private static final String PASSWORD = "load-test-password";
+    // Clear of the ids handed out by Hibernate's pooled generators
+    private static final long FIRST_USER_ID = 10_000_000;
+    private static final int BATCH_SIZE = 500;
+    // Below the BCrypt queue, so sign-ins are not shed with 503
+    private static final int SIGN_IN_CONCURRENCY = 8;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private ConfigurableApplicationContext context;
+    private ApiClient client;
+
+    void start(boolean virtualThreads) {
+        context = new SpringApplicationBuilder(TodolistBackendApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--server.port=0",
+                        "--spring.profiles.active=loadtest",
+                        "--spring.datasource.url=jdbc:h2:mem:todolist-loadtest;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.liquibase.change-log=classpath:db/changelog/db.changelog-master.xml",
+                        "--jwt.secret=load-test-secret-load-test-secret-load-test",
+                        "--spring.mail.host=localhost",
+                        "--spring.mail.username=loadtest@todolist.local",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--app.rate-limit.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.todolist=WARN");
+        client = new ApiClient(context.getEnvironment().getRequiredProperty("local.server.port", Integer.class));
+    }
+
+    void stop() {
+        context.close();
+    }
+
+    ApiClient client() {
+        return client;
+    }
+
+    List<SignedInUser> seed(int users, int todosPerUser) throws Exception {
+        if (todosPerUser < CATEGORY_NAMES.length) {
+            throw new IllegalArgumentException("At least " + CATEGORY_NAMES.length + " todos per user, one per category");
+        }
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String encodedPassword = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            rows.add(new Object[]{FIRST_USER_ID + i, username(i), username(i) + "@loadtest.local", encodedPassword, now, now, now});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, username, email, password, date_created, audit_date_created, "
+                + "audit_date_modified, email_validated) VALUES (?, ?, ?, ?, ?, ?, ?, TRUE)", rows);
+
+        List<Future<SignedInUser>> signedIn = new ArrayList<>(users);
+        try (ExecutorService executor = Executors.newFixedThreadPool(SIGN_IN_CONCURRENCY, Thread.ofVirtual().factory())) {
+            for (int i = 0; i < users; i++) {
+                String username = username(i);
+                signedIn.add(executor.submit(() -> signIn(username, todosPerUser)));
+            }
+        }
+        List<SignedInUser> result = new ArrayList<>(users);
+        for (Future<SignedInUser> user : signedIn) {
+            result.add(user.get());
+        }
+        return result;
+    }
+
+    private SignedInUser signIn(String username, int todosPerUser) throws IOException {
+        JsonNode login = expect(client.send("POST", "/api/auth/login", null,
+                "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}"), 200);
+        String token = login.get("accessToken").asText();
+        for (String name : CATEGORY_NAMES) {
+            expect(client.send("POST", "/api/categories", token, "{\"name\":\"" + name + "\"}"), 201, 200);
+        }
+        for (int created = 0; created < todosPerUser; created += BATCH_SIZE) {
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = created; i < Math.min(created + BATCH_SIZE, todosPerUser); i++) {
+                batch.append(i > created ? "," : "").append("{\"op\":\"CREATE\",\"todo\":{\"title\":\"Todo ")
+                        .append(i + 1).append("\",\"description\":\"Seeded description for load test todo number ")
+                        .append(i + 1).append("\",\"ranking\":1,\"categoryName\":\"")
+                        .append(CATEGORY_NAMES[i % CATEGORY_NAMES.length]).append("\"}}");
+            }
+            expect(client.send("POST", "/api/todos/batch", token, batch.append(']').toString()), 200);
+        }
+        return new SignedInUser(token, expect(client.send("GET", "/api/todos", token, null), 200));
+    }
+
+    private JsonNode expect(HttpResponse<String> response, int... statuses) throws IOException {
+        for (int status : statuses) {
+            if (response.statusCode() == status) {
+                return json.readTree(response.body());
+            }
+        }
+        throw new IllegalStateException(response.request().method() + " " + response.request().uri().getPath()
+                + " answered " + response.statusCode() + ": " + response.body());
+    }
+
+    private static String username(int index) {
+        return "load-user-" + index;
+    }
+}
@@ -0,0 +1,128 @@
+package com.todolist.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts requests at a fixed rate, each on its own virtual thread, whether or not the earlier ones
+ * have been answered (an open model, as with many independent clients). Latency is measured from the
+ * time a request was due to start rather than when it was sent, so a backend that falls behind is
+ * not hidden by a generator that falls behind with it. Requests due during the warmup are not recorded.
+ */
+final class LoadGenerator {
+
+    // Per operation, latencies in microseconds and responses by status; 0 stands for a failed connection
+    static final class Results {
+        final Recorder latencies = new Recorder(3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        Histogram histogram;
+
+        long requests() {
+            return histogram.getTotalCount();
+        }
+
+        long errors() {
+            return statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() == 0 || entry.getKey() >= 400)
+                    .mapToLong(entry -> entry.getValue().sum())
+                    .sum();
+        }
+    }
+
+    private static final long DRAIN_SECONDS = 120;
+
+    private final LoadTestConfig config;
+    private final ApiClient client;
+    private final List<SignedInUser> users;
+    private final Operation[] weighted;
+    private final Map<Operation, Results> results = new EnumMap<>(Operation.class);
+    private final LongAdder dropped = new LongAdder();
+
+    LoadGenerator(LoadTestConfig config, ApiClient client, List<SignedInUser> users) {
+        this.config = config;
+        this.client = client;
+        this.users = users;
+        List<Operation> weighted = new ArrayList<>();
+        config.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+            results.put(operation, new Results());
+        });
+        this.weighted = weighted.toArray(new Operation[0]);
+    }
+
+    Map<Operation, Results> run() throws InterruptedException {
+        Semaphore inFlight = new Semaphore(config.maxInFlight());
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        double interval = 1e9 / config.rate();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long n = 0; ; n++) {
+                long due = start + (long) (n * interval);
+                if (due >= end) {
+                    break;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean measured = due >= measureFrom;
+                if (!inFlight.tryAcquire()) {
+                    if (measured) {
+                        dropped.increment();
+                    }
+                    continue;
+                }
+                Operation operation = weighted[random.nextInt(weighted.length)];
+                SignedInUser user = users.get(random.nextInt(users.size()));
+                executor.execute(() -> {
+                    try {
+                        int status = call(user, operation);
+                        if (measured) {
+                            Results result = results.get(operation);
+                            result.latencies.recordValue(Math.max(0, (System.nanoTime() - due) / 1000));
+                            result.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            // Whatever is still in flight is waited for, and counted
+            if (!inFlight.tryAcquire(config.maxInFlight(), DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Requests still unanswered " + DRAIN_SECONDS + " s after the run");
+            }
+        }
+        results.values().forEach(result -> result.histogram = result.latencies.getIntervalHistogram());
+        return results;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    private int call(SignedInUser user, Operation operation) {
+        try {
+            return user.call(operation, client);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+}
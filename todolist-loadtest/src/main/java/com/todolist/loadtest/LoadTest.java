@@ -0,0 +1,41 @@
+package com.todolist.loadtest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots the backend on H2, seeds and signs in the users, drives the traffic mix at the configured
+ * rate and writes the latency percentiles per endpoint to the report. Exits with status 1 when more
+ * requests failed than max-error-rate allows. See {@link LoadTestConfig} for the arguments.
+ */
+public final class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        Backend backend = new Backend();
+        backend.start(config.virtualThreads());
+        Report report;
+        try {
+            long start = System.nanoTime();
+            List<SignedInUser> users = backend.seed(config.users(), config.todosPerUser());
+            System.out.printf("Seeded and signed in %d users with %d todos each in %d ms%n", config.users(),
+                    config.todosPerUser(), (System.nanoTime() - start) / 1_000_000);
+
+            LoadGenerator generator = new LoadGenerator(config, backend.client(), users);
+            Map<Operation, LoadGenerator.Results> results = generator.run();
+            report = Report.of(config, results, generator.dropped());
+        } finally {
+            backend.stop();
+        }
+        report.print();
+        Path path = Path.of(config.report());
+        report.write(path);
+        System.out.println("Report written to " + path.toAbsolutePath());
+
+        if (report.requests() == 0 || report.errors() > report.requests() * config.maxErrorRate()) {
+            System.out.println("FAILED    " + report.errors() + " of " + report.requests() + " requests failed");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.todolist.loadtest;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The settings of a run, from {@code name=value} arguments:
+ * <ul>
+ *   <li>{@code users} signed-in users (default 200), {@code todos} seeded per user (100)</li>
+ *   <li>{@code rate} requests started per second whatever the response times (200)</li>
+ *   <li>{@code warmup} and {@code duration} in seconds (10 and 30); only the duration is reported</li>
+ *   <li>{@code mix} relative weights of the operations
+ *       (list:35,category-todos:10,categories:15,create:15,toggle:15,reorder:10)</li>
+ *   <li>{@code virtual-threads} whether the backend serves requests on virtual threads (true)</li>
+ *   <li>{@code max-in-flight} requests waiting for a response before new ones are dropped (10000)</li>
+ *   <li>{@code max-error-rate} share of failed requests above which the run fails (0.01)</li>
+ *   <li>{@code report} the JSON report written at the end (target/load-report.json)</li>
+ * </ul>
+ */
+record LoadTestConfig(int users, int todosPerUser, double rate, int warmupSeconds, int durationSeconds,
+                      Map<Operation, Integer> mix, boolean virtualThreads, int maxInFlight,
+                      double maxErrorRate, String report) {
+
+    private static final String DEFAULT_MIX = "list:35,category-todos:10,categories:15,create:15,toggle:15,reorder:10";
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            values.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        LoadTestConfig config = new LoadTestConfig(
+                Integer.parseInt(values.getOrDefault("users", "200")),
+                Integer.parseInt(values.getOrDefault("todos", "100")),
+                Double.parseDouble(values.getOrDefault("rate", "200")),
+                Integer.parseInt(values.getOrDefault("warmup", "10")),
+                Integer.parseInt(values.getOrDefault("duration", "30")),
+                mix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Boolean.parseBoolean(values.getOrDefault("virtual-threads", "true")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                Double.parseDouble(values.getOrDefault("max-error-rate", "0.01")),
+                values.getOrDefault("report", "target/load-report.json"));
+        values.keySet().removeAll(List.of("users", "todos", "rate", "warmup", "duration", "mix",
+                "virtual-threads", "max-in-flight", "max-error-rate", "report"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings " + values.keySet());
+        }
+        if (config.users < 1 || config.rate <= 0 || config.durationSeconds < 1 || config.maxInFlight < 1) {
+            throw new IllegalArgumentException("users, rate, duration and max-in-flight must be positive");
+        }
+        return config;
+    }
+
+    private static Map<Operation, Integer> mix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || Integer.parseInt(parts[1]) < 0) {
+                throw new IllegalArgumentException("Expected operation:weight in mix, got " + entry);
+            }
+            mix.put(Operation.of(parts[0]), Integer.parseInt(parts[1]));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a weight");
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,41 @@
+package com.todolist.loadtest;
+
+/**
+ * The calls of the traffic mix, each a request a signed-in user of the web client makes.
+ */
+enum Operation {
+    LIST("list", "GET /api/todos?size=50"),
+    CATEGORY_TODOS("category-todos", "GET /api/todos/category/{name}?size=50"),
+    CATEGORIES("categories", "GET /api/categories"),
+    CREATE("create", "POST /api/todos"),
+    TOGGLE("toggle", "PATCH /api/todos/{id}/toggle"),
+    REORDER("reorder", "PUT /api/todos/reorder");
+
+    private final String key;
+    private final String endpoint;
+
+    Operation(String key, String endpoint) {
+        this.key = key;
+        this.endpoint = endpoint;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    // The name used in mix= and in the report
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    static Operation of(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key + ", expected one of list, category-todos, "
+                + "categories, create, toggle, reorder");
+    }
+}
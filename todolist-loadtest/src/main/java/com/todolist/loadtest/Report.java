@@ -0,0 +1,86 @@
+package com.todolist.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a run as written to the JSON report: the settings, and per endpoint the requests,
+ * the responses by status, the throughput and the latency percentiles in milliseconds.
+ */
+record Report(String finishedAt, String java, LoadTestConfig settings, long requests, long errors,
+              long dropped, double throughput, List<Endpoint> endpoints) {
+
+    record Endpoint(String operation, String endpoint, long requests, long errors, Map<Integer, Long> statuses,
+                    double throughput, Latency latency) {
+    }
+
+    record Latency(double mean, double p50, double p90, double p99, double p999, double max) {
+
+        static Latency of(Histogram histogram) {
+            return new Latency(round(histogram.getMean()), millis(histogram, 50), millis(histogram, 90),
+                    millis(histogram, 99), millis(histogram, 99.9), round(histogram.getMaxValue()));
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return round(histogram.getValueAtPercentile(percentile));
+        }
+
+        // Microseconds to milliseconds with three decimals
+        private static double round(double micros) {
+            return Math.round(micros) / 1000.0;
+        }
+    }
+
+    static Report of(LoadTestConfig config, Map<Operation, LoadGenerator.Results> results, long dropped) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        long requests = 0;
+        long errors = 0;
+        for (Map.Entry<Operation, LoadGenerator.Results> entry : results.entrySet()) {
+            LoadGenerator.Results result = entry.getValue();
+            Map<Integer, Long> statuses = new TreeMap<>();
+            result.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+            endpoints.add(new Endpoint(entry.getKey().toString(), entry.getKey().endpoint(), result.requests(),
+                    result.errors(), statuses, perSecond(result.requests(), config), Latency.of(result.histogram)));
+            requests += result.requests();
+            errors += result.errors();
+        }
+        return new Report(Instant.now().toString(), Runtime.version().toString(), config, requests, errors,
+                dropped, perSecond(requests, config), endpoints);
+    }
+
+    private static double perSecond(long requests, LoadTestConfig config) {
+        return Math.round(requests * 10.0 / config.durationSeconds()) / 10.0;
+    }
+
+    void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING)
+                .writeValue(path.toFile(), this);
+    }
+
+    void print() {
+        System.out.printf("%-16s %-40s %8s %7s %9s %9s %9s %9s%n", "operation", "endpoint", "requests", "errors",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Endpoint endpoint : endpoints) {
+            System.out.printf("%-16s %-40s %8d %7d %9.2f %9.2f %9.2f %9.2f%n", endpoint.operation(), endpoint.endpoint(),
+                    endpoint.requests(), endpoint.errors(), endpoint.latency().p50(), endpoint.latency().p99(),
+                    endpoint.latency().p999(), endpoint.latency().max());
+        }
+        System.out.printf("%d requests in %d s (%.1f/s of %.1f/s planned), %d errors, %d dropped at max-in-flight%n",
+                requests, settings.durationSeconds(), throughput, settings.rate(), errors, dropped);
+    }
+}
@@ -0,0 +1,95 @@
+package com.todolist.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A user signed in through /api/auth/login, with the ids of their todos per category so toggles and
+ * reorders hit rows that exist. Several requests of one user can be in flight at once.
+ */
+final class SignedInUser {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int REORDERED = 5;
+
+    private final String token;
+    private final Map<String, List<Long>> todoIds = new LinkedHashMap<>();
+    private final List<String> categories;
+
+    SignedInUser(String token, JsonNode todos) {
+        this.token = token;
+        for (JsonNode todo : todos) {
+            todoIds.computeIfAbsent(todo.get("categoryName").asText(), name -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(todo.get("id").asLong());
+        }
+        this.categories = List.copyOf(todoIds.keySet());
+    }
+
+    String token() {
+        return token;
+    }
+
+    // Returns the status code of the response
+    int call(Operation operation, ApiClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String category = categories.get(random.nextInt(categories.size()));
+        List<Long> ids = todoIds.get(category);
+        return switch (operation) {
+            case LIST -> client.send("GET", "/api/todos?size=50", token, null).statusCode();
+            case CATEGORY_TODOS -> client.send("GET", "/api/todos/category/"
+                    + URLEncoder.encode(category, StandardCharsets.UTF_8).replace("+", "%20") + "?size=50", token, null).statusCode();
+            case CATEGORIES -> client.send("GET", "/api/categories", token, null).statusCode();
+            case CREATE -> create(client, category, ids);
+            case TOGGLE -> client.send("PATCH", "/api/todos/" + pick(ids, random) + "/toggle", token, null).statusCode();
+            case REORDER -> client.send("PUT", "/api/todos/reorder", token, reorder(ids, random)).statusCode();
+        };
+    }
+
+    private int create(ApiClient client, String category, List<Long> ids) {
+        HttpResponse<String> response = client.send("POST", "/api/todos", token, "{\"title\":\"Load test todo\","
+                + "\"description\":\"Created while the load test runs\",\"ranking\":1,\"categoryName\":"
+                + quote(category) + "}");
+        if (response.statusCode() == 201) {
+            try {
+                ids.add(JSON.readTree(response.body()).get("id").asLong());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unreadable created todo " + response.body(), e);
+            }
+        }
+        return response.statusCode();
+    }
+
+    // A few todos of one category moved into a random order
+    private static String reorder(List<Long> ids, ThreadLocalRandom random) {
+        StringBuilder json = new StringBuilder("[");
+        for (int ranking = 1; ranking <= REORDERED; ranking++) {
+            json.append(ranking > 1 ? "," : "").append("{\"id\":").append(pick(ids, random))
+                    .append(",\"ranking\":").append(random.nextInt(1, 20)).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static long pick(List<Long> ids, ThreadLocalRandom random) {
+        synchronized (ids) {
+            return ids.get(random.nextInt(ids.size()));
+        }
+    }
+
+    private static String quote(String value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}